@@ -0,0 +1,73 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.query.FluxRecord;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic and deterministic datasets used by the benchmarks, so they run offline without any InfluxDB server.
+ */
+final class Datasets {
+    private static final long START = 1422568543702900257L;
+
+    private Datasets() {
+    }
+
+    static String lineProtocol(int rows, int tags, int fields) {
+        var random = new Random(rows * 31L + tags * 7L + fields);
+        var builder = new StringBuilder(rows * (32 + tags * 20 + fields * 16));
+
+        for (int row = 0; row < rows; row++) {
+            builder.append("measurement_").append(row % 4);
+            for (int tag = 0; tag < tags; tag++) {
+                builder.append(",tag_").append(tag).append("=value_").append(random.nextInt(100));
+            }
+            builder.append(' ');
+            for (int field = 0; field < fields; field++) {
+                if (field > 0) {
+                    builder.append(',');
+                }
+                builder.append("field_").append(field).append('=');
+                switch (field % 4) {
+                    case 0 -> builder.append(random.nextInt(100_000) / 100.0);
+                    case 1 -> builder.append(random.nextInt()).append('i');
+                    case 2 -> builder.append(random.nextBoolean());
+                    default -> builder.append("\"string ").append(random.nextInt(100)).append('"');
+                }
+            }
+            builder.append(' ').append(START + row).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    static List<FluxRecord> records(int rows, int tags) {
+        var random = new Random(rows * 31L + tags);
+        var start = Instant.parse("2015-01-29T21:55:00Z");
+        var records = new ArrayList<FluxRecord>(rows);
+
+        for (int row = 0; row < rows; row++) {
+            // same columns and order as the annotated CSV parser produces
+            var record = new FluxRecord(row % 4);
+            var values = record.getValues();
+            values.put("result", "_result");
+            values.put("table", (long) (row % 4));
+            values.put("_start", start);
+            values.put("_stop", start.plusSeconds(3600));
+            values.put("_time", start.plusNanos(row));
+            values.put("_value", random.nextDouble());
+            values.put("_field", "value");
+            values.put("_measurement", "measurement_" + (row % 4));
+            for (int tag = 0; tag < tags; tag++) {
+                values.put("tag_" + tag, "value_" + random.nextInt(100));
+            }
+            record.getRow().addAll(values.values());
+            records.add(record);
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,59 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.query.FluxRecord;
+import io.kestra.core.serializers.FileSerde;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FluxQueryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"1", "8"})
+    private int tags;
+
+    private List<FluxRecord> records;
+
+    @Setup
+    public void setup() {
+        records = Datasets.records(rows, tags);
+    }
+
+    @Benchmark
+    public void convert(Blackhole blackhole) {
+        var converter = new FluxRecordConverter(null, true);
+        for (var record : records) {
+            blackhole.consume(converter.convert(record));
+        }
+    }
+
+    @Benchmark
+    public void convertProjected(Blackhole blackhole) {
+        var converter = new FluxRecordConverter(List.of("_time", "_value", "_field", "_measurement"), true);
+        for (var record : records) {
+            blackhole.consume(converter.convert(record));
+        }
+    }
+
+    /**
+     * The STORE path: conversion and ION serialization, the file system is left out.
+     */
+    @Benchmark
+    public void store() throws IOException {
+        var converter = new FluxRecordConverter(null);
+        try (var output = new BufferedOutputStream(OutputStream.nullOutputStream(), FileSerde.BUFFER_SIZE)) {
+            for (var record : records) {
+                FileSerde.write(output, converter.convert(record));
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.kestra.plugin.influxdb;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LineProtocolBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"1", "8"})
+    private int tags;
+
+    @Param({"1", "8"})
+    private int fields;
+
+    private String data;
+
+    @Setup
+    public void setup() {
+        data = Datasets.lineProtocol(rows, tags, fields);
+    }
+
+    @Benchmark
+    public List<Write.Measurement> fromWireLines() {
+        return Write.Measurement.fromWireLines(data);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        var point = new LineProtocolParser.Point();
+        data.lines().forEach(line -> blackhole.consume(LineProtocolParser.parse(line, point).fieldCount()));
+    }
+}
@@ -0,0 +1,48 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.exceptions.IllegalVariableEvaluationException;
+import io.kestra.core.models.tasks.Task;
+import io.kestra.core.runners.RunContext;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+@SuperBuilder
+@ToString
+@EqualsAndHashCode
+@Getter
+@NoArgsConstructor
+public abstract class AbstractInfluxDBTask extends Task implements InfluxDBConnectionInterface {
+    @Builder.Default
+    protected String url = "http://localhost:8086";
+
+    @Builder.Default
+    protected String token = "my-token";
+
+    @Builder.Default
+    protected String org = "my-org";
+
+    @Builder.Default
+    protected String bucket = "my-bucket";
+
+    protected ClientOptions options;
+
+    /**
+     * Borrow a client from the worker wide pool, the lease must be closed at the end of the run but the client itself
+     * is kept open for the next runs with the same connection settings.
+     */
+    protected InfluxDBClientPool.Lease client(InfluxDBClientPool.Key clientKey) {
+        return InfluxDBClientPool.INSTANCE.acquire(clientKey);
+    }
+
+    static InfluxDBClientPool.Transport transport(RunContext runContext, ClientOptions options) throws IllegalVariableEvaluationException {
+        return options == null ? InfluxDBClientPool.Transport.DEFAULT : options.render(runContext);
+    }
+
+    /**
+     * @param clientKey the rendered connection settings, see {@link #clientKey(RunContext)}
+     * @return the tags of the metrics, so they can be compared per target
+     */
+    protected static String[] metricTags(InfluxDBClientPool.Key clientKey) {
+        return new String[]{"url", clientKey.url(), "bucket", clientKey.bucket(), "org", clientKey.org()};
+    }
+}
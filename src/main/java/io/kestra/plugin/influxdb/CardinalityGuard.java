@@ -0,0 +1,116 @@
+package io.kestra.plugin.influxdb;
+
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Estimate the number of distinct series and the number of distinct values of each tag key of the lines read, with
+ * {@link HyperLogLog} sketches so the memory used does not depend on the input.
+ * <p>
+ * The limits are checked every {@link #CHECK_INTERVAL} lines and at the end of the input, so an exceeded limit stops
+ * the write at most a few batches after the lines that caused it. Only the first {@link #MAX_TAG_KEYS} tag keys are
+ * tracked, a tag key explosion still shows in the number of series.
+ */
+final class CardinalityGuard {
+    static final int CHECK_INTERVAL = 1000;
+    static final int MAX_TAG_KEYS = 256;
+
+    private static final int SERIES_PRECISION = 14;
+    private static final int TAG_PRECISION = 12;
+
+    private final Long maxSeries;
+    private final Long maxTagValues;
+    private final CardinalityLimits.Action action;
+    private final Logger logger;
+
+    private final LineProtocolParser.Point point = new LineProtocolParser.Point();
+    private final HyperLogLog series = new HyperLogLog(SERIES_PRECISION);
+    private final Map<String, HyperLogLog> tags = new HashMap<>();
+    private final Set<String> warned = new HashSet<>();
+    private long lines;
+
+    CardinalityGuard(Long maxSeries, Long maxTagValues, CardinalityLimits.Action action, Logger logger) {
+        this.maxSeries = maxSeries;
+        this.maxTagValues = maxTagValues;
+        this.action = action;
+        this.logger = logger;
+    }
+
+    void observe(String line) {
+        try {
+            LineProtocolParser.parse(line, point);
+        } catch (IllegalArgumentException e) {
+            // invalid lines are reported by the validation or by the server
+            return;
+        }
+
+        series.add(point.seriesHash64());
+        for (int i = 0; i < point.tagCount(); i++) {
+            var sketch = tags.get(point.tagKey(i));
+            if (sketch == null && tags.size() < MAX_TAG_KEYS) {
+                sketch = new HyperLogLog(TAG_PRECISION);
+                tags.put(point.tagKey(i), sketch);
+            }
+
+            if (sketch != null) {
+                sketch.add(point.tagValueHash64(i));
+            }
+        }
+
+        if (++lines % CHECK_INTERVAL == 0) {
+            this.check();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a limit is exceeded and the action is FAIL
+     */
+    void check() {
+        if (maxSeries != null) {
+            var estimate = series.estimate();
+            if (estimate > maxSeries) {
+                this.exceeded("series", "About " + estimate + " distinct series, more than the " + maxSeries + " allowed");
+            }
+        }
+
+        if (maxTagValues != null) {
+            for (var entry : tags.entrySet()) {
+                var estimate = entry.getValue().estimate();
+                if (estimate > maxTagValues) {
+                    this.exceeded(
+                        "tag " + entry.getKey(),
+                        "About " + estimate + " distinct values for the tag '" + entry.getKey() + "', more than the " + maxTagValues + " allowed"
+                    );
+                }
+            }
+        }
+    }
+
+    long series() {
+        return series.estimate();
+    }
+
+    /**
+     * @return the estimated number of distinct values of each tag key, sorted by key
+     */
+    Map<String, Long> tags() {
+        var estimates = new TreeMap<String, Long>();
+        tags.forEach((key, sketch) -> estimates.put(key, sketch.estimate()));
+        return estimates;
+    }
+
+    private void exceeded(String limit, String message) {
+        if (action == CardinalityLimits.Action.FAIL) {
+            throw new IllegalArgumentException(message + " after " + lines + " lines, the write has been aborted");
+        }
+
+        if (warned.add(limit)) {
+            logger.warn("{} after {} lines", message, lines);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.models.property.Property;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Getter
+@ToString
+@EqualsAndHashCode
+@Jacksonized
+public class CardinalityLimits {
+    @Schema(
+        title = "Maximum estimated number of distinct series",
+        description = "A series is a measurement and its tag set."
+    )
+    private Property<Long> maxSeries;
+
+    @Schema(
+        title = "Maximum estimated number of distinct values of a single tag key",
+        description = "Catches an identifier such as a UUID or a timestamp written as a tag instead of a field."
+    )
+    private Property<Long> maxTagValues;
+
+    @Schema(
+        title = "What to do when a limit is exceeded",
+        description = "FAIL stops reading the input and fails the task, WARN only logs a warning."
+    )
+    @Builder.Default
+    private Property<Action> action = Property.of(Action.FAIL);
+
+    public enum Action {
+        WARN,
+        FAIL
+    }
+}
@@ -0,0 +1,78 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.exceptions.IllegalVariableEvaluationException;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.runners.RunContext;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.Duration;
+
+@Builder
+@Getter
+@ToString
+@EqualsAndHashCode
+@Jacksonized
+public class ClientOptions {
+    @Schema(
+        title = "Compress the requests and responses with gzip",
+        description = "Line Protocol and annotated CSV usually compress about 10 times, " +
+            "which helps on slow links at the cost of some CPU on both sides."
+    )
+    @Builder.Default
+    private Property<Boolean> gzip = Property.of(false);
+
+    @Schema(
+        title = "Timeout to establish a connection"
+    )
+    @Builder.Default
+    private Property<Duration> connectTimeout = Property.of(Duration.ofSeconds(10));
+
+    @Schema(
+        title = "Timeout between two packets read from the server",
+        description = "Long running queries may need a higher value."
+    )
+    @Builder.Default
+    private Property<Duration> readTimeout = Property.of(Duration.ofSeconds(10));
+
+    @Schema(
+        title = "Timeout between two packets written to the server"
+    )
+    @Builder.Default
+    private Property<Duration> writeTimeout = Property.of(Duration.ofSeconds(10));
+
+    @Schema(
+        title = "Maximum number of idle connections kept open"
+    )
+    @Builder.Default
+    private Property<Integer> maxIdleConnections = Property.of(5);
+
+    @Schema(
+        title = "Time an idle connection is kept open"
+    )
+    @Builder.Default
+    private Property<Duration> keepAlive = Property.of(Duration.ofMinutes(5));
+
+    @Schema(
+        title = "Maximum number of concurrent asynchronous requests",
+        description = "Limits the concurrent shards of a query and the concurrent batches of the BATCHING write mode."
+    )
+    @Builder.Default
+    private Property<Integer> maxRequests = Property.of(64);
+
+    InfluxDBClientPool.Transport render(RunContext runContext) throws IllegalVariableEvaluationException {
+        return new InfluxDBClientPool.Transport(
+            runContext.render(gzip).as(Boolean.class).orElseThrow(),
+            runContext.render(connectTimeout).as(Duration.class).orElseThrow(),
+            runContext.render(readTimeout).as(Duration.class).orElseThrow(),
+            runContext.render(writeTimeout).as(Duration.class).orElseThrow(),
+            runContext.render(maxIdleConnections).as(Integer.class).orElseThrow(),
+            runContext.render(keepAlive).as(Duration.class).orElseThrow(),
+            runContext.render(maxRequests).as(Integer.class).orElseThrow()
+        );
+    }
+}
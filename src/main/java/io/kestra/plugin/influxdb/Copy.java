@@ -0,0 +1,429 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.client.domain.WritePrecision;
+import io.kestra.core.models.annotations.Plugin;
+import io.kestra.core.models.executions.metrics.Counter;
+import io.kestra.core.models.executions.metrics.Timer;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.models.tasks.RunnableTask;
+import io.kestra.core.runners.RunContext;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+@SuperBuilder
+@ToString
+@EqualsAndHashCode
+@Getter
+@NoArgsConstructor
+@Schema(
+    title = "Copy the result of a Flux query to a bucket",
+    description = "Stream the records of a query on the source into Line Protocol batches written to the target, " +
+        "which can be another bucket, organization or server. Reading and writing overlap through a bounded queue of " +
+        "batches, so the query only reads ahead of the writes by `queueSize` batches and nothing is stored in between.\n\n" +
+        "The query must return the data as stored in a bucket, with the `_measurement`, `_field`, `_value` and `_time` " +
+        "columns, every other column but `result`, `table`, `_start` and `_stop` being written as a tag. " +
+        "Aggregations such as `aggregateWindow()` keep this shape, `pivot()` doesn't."
+)
+@Plugin(
+    examples = {
+        @io.kestra.core.models.annotations.Example(
+            title = "Migrate a bucket to another server",
+            code = """
+                    id: migrate
+                    namespace: io.kestra.influxdb
+                    tasks:
+                      - id: copy
+                        type: io.kestra.plugin.influxdb.Copy
+                        url: http://old-server:8086
+                        token: old-token
+                        org: my-org
+                        bucket: my-bucket
+                        query: |
+                          from(bucket: "my-bucket")
+                            |> range(start: 0)
+                        target:
+                          url: http://new-server:8086
+                          token: new-token
+                          bucket: my-bucket
+                """
+        ),
+        @io.kestra.core.models.annotations.Example(
+            title = "Downsample yesterday's cpu measurements into hourly means in a rollup bucket",
+            code = """
+                    id: downsample
+                    namespace: io.kestra.influxdb
+                    tasks:
+                      - id: copy
+                        type: io.kestra.plugin.influxdb.Copy
+                        url: http://localhost:8086
+                        token: my-token
+                        org: my-org
+                        bucket: my-bucket
+                        query: |
+                          from(bucket: "my-bucket")
+                            |> range(start: -1d)
+                            |> filter(fn: (r) => r["_measurement"] == "cpu")
+                            |> aggregateWindow(every: 1h, fn: mean, createEmpty: false)
+                        target:
+                          bucket: rollups
+                        measurement: cpu_1h
+                        fields:
+                          usage: usage_mean
+                        tags:
+                          host: server
+                """
+        )
+    }
+)
+public class Copy extends AbstractInfluxDBTask implements RunnableTask<Copy.Output> {
+    private static final LineProtocolBatcher.Batch END = new LineProtocolBatcher.Batch("", 0, 0);
+
+    @Schema(
+        title = "Flux query",
+        description = "The Flux query to execute on the source"
+    )
+    private Property<String> query;
+
+    @Schema(
+        title = "Target of the copy",
+        description = "Where the records are written, the source connection settings are used for the ones not set"
+    )
+    private CopyTarget target;
+
+    @Schema(
+        title = "Measurement of the copied points",
+        description = "The measurement of each record is kept if not set"
+    )
+    private Property<String> measurement;
+
+    @Schema(
+        title = "Tags to rename",
+        description = "The new key of each tag to rename, the other tags keep their key"
+    )
+    private Property<Map<String, String>> tags;
+
+    @Schema(
+        title = "Fields to rename",
+        description = "The new key of each field to rename, the other fields keep their key"
+    )
+    private Property<Map<String, String>> fields;
+
+    @Schema(
+        title = "Maximum number of points of a write request",
+        description = "Lowered while the target throttles the writes, see `maxRetries`."
+    )
+    @Builder.Default
+    private Property<Integer> batchSize = Property.of(5000);
+
+    @Schema(
+        title = "Maximum size in bytes of a write request"
+    )
+    @Builder.Default
+    private Property<Long> maxBatchBytes = Property.of(10L * 1024 * 1024);
+
+    @Schema(
+        title = "Number of batches the query can read ahead of the writes",
+        description = "The query pauses while the queue is full, which bounds the memory used to about " +
+            "`queueSize + 2` batches."
+    )
+    @Builder.Default
+    private Property<Integer> queueSize = Property.of(4);
+
+    @Schema(
+        title = "Maximum number of retries of a write request",
+        description = "Only the requests rejected with a 429 or 503 status are retried, after the `Retry-After` delay " +
+            "sent by the target or an exponential backoff."
+    )
+    @Builder.Default
+    private Property<Integer> maxRetries = Property.of(5);
+
+    @Override
+    public Copy.Output run(RunContext runContext) throws Exception {
+        if (target == null) {
+            throw new IllegalArgumentException("'target' is required");
+        }
+
+        var renderedQuery = runContext.render(query).as(String.class).orElseThrow();
+        var queueSizeValue = runContext.render(queueSize).as(Integer.class).orElseThrow();
+        if (queueSizeValue < 1) {
+            throw new IllegalArgumentException("'queueSize' must be at least 1, got " + queueSizeValue);
+        }
+
+        var converter = new FluxRecordLineConverter(
+            runContext.render(measurement).as(String.class).orElse(null),
+            runContext.render(tags).asMap(String.class, String.class),
+            runContext.render(fields).asMap(String.class, String.class)
+        );
+        var controller = new WriteRateController(
+            runContext.render(batchSize).as(Integer.class).orElseThrow(),
+            1,
+            runContext.render(maxRetries).as(Integer.class).orElseThrow()
+        );
+        var batcher = new LineProtocolBatcher(
+            controller.batchSize(),
+            runContext.render(maxBatchBytes).as(Long.class).orElseThrow(),
+            null
+        );
+
+        var sourceKey = this.clientKey(runContext);
+        var targetOrg = target.getOrg() != null ? runContext.render(target.getOrg()) : sourceKey.org();
+        var targetBucket = runContext.render(Objects.requireNonNull(target.getBucket(), "'target.bucket' is required"));
+        var targetKey = new InfluxDBClientPool.Key(
+            target.getUrl() != null ? runContext.render(target.getUrl()) : sourceKey.url(),
+            target.getToken() != null ? runContext.render(target.getToken()) : sourceKey.token(),
+            targetOrg,
+            targetBucket,
+            transport(runContext, target.getOptions() != null ? target.getOptions() : options)
+        );
+
+        var queue = new ArrayBlockingQueue<LineProtocolBatcher.Batch>(queueSizeValue);
+        var failure = new AtomicReference<Throwable>();
+        var stopped = new AtomicBoolean();
+        var written = new Written();
+        var readWaitNanos = new LongAdder();
+        var records = new AtomicLong();
+        var skipped = new AtomicLong();
+
+        var started = System.nanoTime();
+        try (
+            var source = InfluxDBClientPool.INSTANCE.acquire(sourceKey);
+            var destination = InfluxDBClientPool.INSTANCE.acquire(targetKey)
+        ) {
+            var writeApi = destination.client().getWriteApiBlocking();
+            PartitionedWriter.Sender sender = batch -> writeApi.writeRecord(targetBucket, targetOrg, WritePrecision.NS, batch.lines());
+
+            var writer = Thread.ofVirtual()
+                .name("influxdb-copy-" + this.id)
+                .start(() -> write(queue, controller, sender, written, failure));
+
+            try {
+                FluxQuery.stream(source.client().getQueryApi(), renderedQuery, (cancellable, record) -> {
+                    if (failure.get() != null || stopped.get()) {
+                        cancellable.cancel();
+                        return;
+                    }
+
+                    records.incrementAndGet();
+                    var line = converter.convert(record);
+                    if (line == null) {
+                        skipped.incrementAndGet();
+                        return;
+                    }
+
+                    batcher.maxPoints(controller.batchSize());
+                    var batch = batcher.add(line);
+                    if (batch != null && !put(queue, batch, failure, stopped, readWaitNanos)) {
+                        cancellable.cancel();
+                    }
+                });
+
+                var last = batcher.flush();
+                if (last != null && failure.get() == null) {
+                    put(queue, last, failure, stopped, readWaitNanos);
+                }
+
+                // the writer drains the queue even after a failure, so the end marker always finds a place
+                queue.put(END);
+                writer.join();
+            } catch (Exception e) {
+                // the query is cancelled by now, give up the batch it may still be queueing then stop the writer
+                stopped.set(true);
+                writer.interrupt();
+                join(writer, e);
+                throw e;
+            }
+        }
+
+        if (failure.get() != null) {
+            if (failure.get() instanceof Exception exception) {
+                throw exception;
+            }
+            throw new IllegalStateException(failure.get());
+        }
+
+        var elapsed = Duration.ofNanos(System.nanoTime() - started);
+        var output = Output.builder()
+            .records(records.get())
+            .skipped(skipped.get())
+            .count(written.points.get())
+            .bytes(written.bytes.get())
+            .batches(written.batches.get())
+            .retries(controller.retries())
+            .pointsPerSecond(elapsed.isZero() ? 0 : written.points.get() * 1_000_000_000.0 / elapsed.toNanos())
+            .build();
+
+        runContext.logger().info(
+            "Copied {} records as {} points ({} bytes) in {} batches to {}, {} points/s",
+            output.getRecords(), output.getCount(), output.getBytes(), output.getBatches(), targetBucket,
+            Math.round(output.getPointsPerSecond())
+        );
+        if (output.getSkipped() > 0) {
+            runContext.logger().warn("Skipped {} records without a value that can be written", output.getSkipped());
+        }
+
+        var metricTags = metricTags(sourceKey);
+        runContext.metric(Counter.of("records", output.getRecords(), metricTags));
+        runContext.metric(Counter.of("points", output.getCount(), metricTags));
+        runContext.metric(Counter.of("bytes.sent", output.getBytes(), metricTags));
+        runContext.metric(Counter.of("batches", output.getBatches(), metricTags));
+        runContext.metric(Counter.of("retries", output.getRetries(), metricTags));
+        runContext.metric(Timer.of("duration", elapsed, metricTags));
+        // time the query spent waiting for the writes, close to the whole duration when the target is the bottleneck
+        runContext.metric(Timer.of("read.wait", Duration.ofNanos(readWaitNanos.sum()), metricTags));
+        runContext.metric(Timer.of("write.wait", Duration.ofNanos(written.waitNanos.sum()), metricTags));
+
+        return output;
+    }
+
+    /**
+     * Queue a batch for the writer, waiting while the queue is full. The query callbacks run on a thread of the HTTP
+     * client that is not interrupted with the task, so the wait also ends once the writer failed or the task stopped.
+     *
+     * @return {@code false} if the batch was not queued
+     */
+    private static boolean put(
+        BlockingQueue<LineProtocolBatcher.Batch> queue,
+        LineProtocolBatcher.Batch batch,
+        AtomicReference<Throwable> failure,
+        AtomicBoolean stopped,
+        LongAdder waitNanos
+    ) {
+        var started = System.nanoTime();
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null || stopped.get()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waitNanos.add(System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Wait for the stopped writer without hiding the failure of the task, the interrupt flag being restored afterwards.
+     */
+    private static void join(Thread writer, Exception failure) {
+        var interrupted = Thread.interrupted();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            failure.addSuppressed(e);
+            interrupted = true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Send the queued batches until the end marker, the batches queued after a failure are only drained.
+     */
+    private static void write(
+        BlockingQueue<LineProtocolBatcher.Batch> queue,
+        WriteRateController controller,
+        PartitionedWriter.Sender sender,
+        Written written,
+        AtomicReference<Throwable> failure
+    ) {
+        try {
+            while (true) {
+                var started = System.nanoTime();
+                var batch = queue.take();
+                written.waitNanos.add(System.nanoTime() - started);
+
+                if (batch == END) {
+                    return;
+                }
+
+                if (failure.get() == null) {
+                    try {
+                        controller.send(batch, sender);
+                        written.points.addAndGet(batch.points());
+                        written.bytes.addAndGet(batch.bytes());
+                        written.batches.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        // stopped with the task, no end marker will come
+                        throw e;
+                    } catch (Exception e) {
+                        failure.set(e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Written {
+        private final AtomicLong points = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger batches = new AtomicInteger();
+        private final LongAdder waitNanos = new LongAdder();
+    }
+
+    @Builder
+    @Getter
+    public static class Output implements io.kestra.core.models.tasks.Output {
+        @Schema(
+            title = "Records read",
+            description = "How many records the query returned"
+        )
+        private final long records;
+
+        @Schema(
+            title = "Records skipped",
+            description = "How many records had no value that can be written, such as null or NaN"
+        )
+        private final long skipped;
+
+        @Schema(
+            title = "Points written",
+            description = "How many points have been written to the target"
+        )
+        private final long count;
+
+        @Schema(
+            title = "Bytes sent",
+            description = "How many bytes of Line Protocol have been sent to the target"
+        )
+        private final long bytes;
+
+        @Schema(
+            title = "Batches sent",
+            description = "How many write requests have been sent to the target"
+        )
+        private final int batches;
+
+        @Schema(
+            title = "Retries",
+            description = "How many write requests have been retried"
+        )
+        private final int retries;
+
+        @Schema(
+            title = "Points per second",
+            description = "The copy rate achieved, from the start of the query to the last batch written"
+        )
+        private final double pointsPerSecond;
+    }
+}
@@ -0,0 +1,49 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.models.annotations.PluginProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Getter
+@ToString
+@EqualsAndHashCode
+@Jacksonized
+public class CopyTarget {
+    @Schema(
+        title = "InfluxDB URL",
+        description = "The URL of the source server if not set"
+    )
+    @PluginProperty(dynamic = true)
+    private String url;
+
+    @Schema(
+        title = "InfluxDB token",
+        description = "The token of the source if not set"
+    )
+    @PluginProperty(dynamic = true)
+    private String token;
+
+    @Schema(
+        title = "InfluxDB organization",
+        description = "The organization of the source if not set"
+    )
+    @PluginProperty(dynamic = true)
+    private String org;
+
+    @Schema(
+        title = "InfluxDB bucket"
+    )
+    @PluginProperty(dynamic = true)
+    private String bucket;
+
+    @Schema(
+        title = "HTTP options of the client",
+        description = "The options of the source if not set"
+    )
+    private ClientOptions options;
+}
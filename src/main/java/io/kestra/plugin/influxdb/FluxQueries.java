@@ -0,0 +1,275 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.models.annotations.Plugin;
+import io.kestra.core.models.executions.metrics.Counter;
+import io.kestra.core.models.executions.metrics.Timer;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.models.tasks.RunnableTask;
+import io.kestra.core.models.tasks.common.FetchType;
+import io.kestra.core.runners.RunContext;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+@SuperBuilder
+@ToString
+@EqualsAndHashCode
+@Getter
+@NoArgsConstructor
+@Schema(
+    title = "Execute several Flux queries concurrently",
+    description = "Execute a named set of Flux queries over a single client and its connection pool, at most " +
+        "`parallelism` at a time, and output the result and duration of each query under its name. " +
+        "Cheaper than one `FluxQuery` task per query when refreshing many small results, such as the panels of a " +
+        "dashboard. A failed query fails the task and cancels the queries still running."
+)
+@Plugin(
+    examples = {
+        @io.kestra.core.models.annotations.Example(
+            title = "Refresh the figures of a dashboard",
+            code = """
+                    id: dashboard
+                    namespace: io.kestra.influxdb
+                    tasks:
+                      - id: refresh
+                        type: io.kestra.plugin.influxdb.FluxQueries
+                        url: http://localhost:8086
+                        token: my-token
+                        org: my-org
+                        bucket: my-bucket
+                        fetchType: FETCH_ONE
+                        parallelism: 8
+                        queries:
+                          cpu: |
+                            from(bucket: "my-bucket")
+                              |> range(start: -1h)
+                              |> filter(fn: (r) => r["_measurement"] == "cpu")
+                              |> mean()
+                          memory: |
+                            from(bucket: "my-bucket")
+                              |> range(start: -1h)
+                              |> filter(fn: (r) => r["_measurement"] == "mem")
+                              |> last()
+                      - id: log
+                        type: io.kestra.plugin.core.log.Log
+                        message: "{{ outputs.refresh.queries.cpu.row._value }}"
+                """
+        )
+    }
+)
+public class FluxQueries extends AbstractInfluxDBTask implements RunnableTask<FluxQueries.Output> {
+    @Schema(
+        title = "Flux queries",
+        description = "The Flux query to execute for each name, the names being the keys of the `queries` output"
+    )
+    private Property<Map<String, String>> queries;
+
+    @Schema(
+        title = "The way you want to store the data.",
+        description = "FETCH_ONE output the first row, "
+            + "FETCH output all the rows, "
+            + "STORE store all rows in a file, "
+            + "NONE do nothing. "
+            + "Applies to every query."
+    )
+    @Builder.Default
+    private Property<FetchType> fetchType = Property.of(FetchType.FETCH);
+
+    @Schema(
+        title = "Format of the files when using STORE",
+        description = "See the `format` of `FluxQuery`"
+    )
+    @Builder.Default
+    private Property<FluxQuery.Format> format = Property.of(FluxQuery.Format.ION);
+
+    @Schema(
+        title = "Columns to keep in the output rows",
+        description = "Only these columns are copied in the rows of every query. All the columns are kept if not set."
+    )
+    private Property<List<String>> columns;
+
+    @Schema(
+        title = "Maximum number of queries executed concurrently",
+        description = "Also bounded by the `maxRequests` of the client `options`."
+    )
+    @Builder.Default
+    private Property<Integer> parallelism = Property.of(8);
+
+    @Override
+    public FluxQueries.Output run(RunContext runContext) throws Exception {
+        var queriesValue = runContext.render(queries).asMap(String.class, String.class);
+        var fetchTypeValue = runContext.render(fetchType).as(FetchType.class).orElseThrow();
+        var formatValue = runContext.render(format).as(FluxQuery.Format.class).orElseThrow();
+        var columnsValue = runContext.render(columns).asList(String.class);
+        var parallelismValue = runContext.render(parallelism).as(Integer.class).orElseThrow();
+        var clientKey = this.clientKey(runContext);
+        var metricTags = metricTags(clientKey);
+
+        if (queriesValue.isEmpty()) {
+            throw new IllegalArgumentException("'queries' must contain at least one query");
+        }
+        if (parallelismValue < 1) {
+            throw new IllegalArgumentException("'parallelism' must be at least 1, got " + parallelismValue);
+        }
+
+        runContext.logger().info("Executing {} queries with a parallelism of {}", queriesValue.size(), parallelismValue);
+
+        var names = new ArrayList<>(queriesValue.keySet());
+        var timings = new ArrayList<FluxQuery.Timings>(names.size());
+        var files = new ArrayList<File>(names.size());
+        var results = new LinkedHashMap<String, Result>();
+        var permits = new Semaphore(parallelismValue);
+
+        var started = System.nanoTime();
+        try (
+            var lease = this.client(clientKey);
+            var executor = Executors.newVirtualThreadPerTaskExecutor()
+        ) {
+            var queryApi = lease.client().getQueryApi();
+            var futures = new ArrayList<Future<Result>>(names.size());
+
+            for (var name : names) {
+                var query = queriesValue.get(name);
+                var queryTimings = new FluxQuery.Timings();
+                var file = fetchTypeValue == FetchType.STORE ? runContext.workingDir().createTempFile(formatValue.extension()).toFile() : null;
+                timings.add(queryTimings);
+                files.add(file);
+
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        var queryStarted = System.nanoTime();
+                        var output = FluxQuery.execute(
+                            queryApi, query, fetchTypeValue, formatValue, new FluxRecordConverter(columnsValue, fetchTypeValue == FetchType.FETCH), FluxQuery.FetchLimit.NONE, file, queryTimings
+                        );
+                        return Result.of(output, Duration.ofNanos(System.nanoTime() - queryStarted));
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            try {
+                for (int i = 0; i < names.size(); i++) {
+                    try {
+                        results.put(names.get(i), futures.get(i).get());
+                    } catch (ExecutionException e) {
+                        var cause = e.getCause() instanceof Exception exception ? exception : e;
+                        throw new Exception("Query '" + names.get(i) + "' failed: " + cause.getMessage(), cause);
+                    }
+                }
+            } catch (Exception e) {
+                // a failed query or a killed task, interrupt the queries still running, which cancels them
+                executor.shutdownNow();
+                throw e;
+            }
+        } catch (Exception e) {
+            // the queries are over once the executor is closed, only their files are left
+            for (var file : files) {
+                if (file != null) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+            throw e;
+        }
+        var elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+        for (int i = 0; i < names.size(); i++) {
+            var name = names.get(i);
+            var result = results.get(name);
+
+            if (files.get(i) != null) {
+                result = result.toBuilder()
+                    .uri(FluxQuery.upload(runContext, files.get(i), timings.get(i)))
+                    .build();
+                results.put(name, result);
+            }
+
+            var tags = Stream.concat(Stream.of(metricTags), Stream.of("query", name)).toArray(String[]::new);
+            timings.get(i).report(runContext, tags, result.getCount());
+        }
+
+        var count = results.values().stream().mapToInt(Result::getCount).sum();
+        runContext.logger().info("Executed {} queries returning {} rows in {}", results.size(), count, elapsed);
+
+        runContext.metric(Counter.of("queries", results.size(), metricTags));
+        runContext.metric(Timer.of("duration", elapsed, metricTags));
+
+        return Output.builder()
+            .count(count)
+            .queries(results)
+            .build();
+    }
+
+    @Builder(toBuilder = true)
+    @Getter
+    public static class Result {
+        @Schema(
+            title = "Measurements count",
+            description = "Number of rows returned by the query"
+        )
+        private final int count;
+
+        @Schema(
+            title = "First row",
+            description = "First row of the query result when using FETCH_ONE"
+        )
+        private final Map<String, Object> row;
+
+        @Schema(
+            title = "All rows",
+            description = "All rows from the query result when using FETCH"
+        )
+        private final List<Map<String, Object>> rows;
+
+        @Schema(
+            title = "URI to the stored file",
+            description = "URI to the file containing the results when using STORE"
+        )
+        private final String uri;
+
+        @Schema(
+            title = "Duration of the query",
+            description = "From the time it got a slot to the last record received"
+        )
+        private final Duration duration;
+
+        private static Result of(FluxQuery.Output output, Duration duration) {
+            return Result.builder()
+                .count(output.getCount())
+                .row(output.getRow())
+                .rows(output.getRows())
+                .duration(duration)
+                .build();
+        }
+    }
+
+    @Builder
+    @Getter
+    public static class Output implements io.kestra.core.models.tasks.Output {
+        @Schema(
+            title = "Measurements count",
+            description = "Number of rows returned by all the queries"
+        )
+        private final int count;
+
+        @Schema(
+            title = "Result of each query",
+            description = "The count, rows, file URI and duration of each query, by query name"
+        )
+        private final Map<String, Result> queries;
+    }
+}
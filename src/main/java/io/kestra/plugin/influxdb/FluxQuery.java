@@ -1,22 +1,49 @@
 package io.kestra.plugin.influxdb;
 
-import com.influxdb.client.InfluxDBClientFactory;
+import com.influxdb.Cancellable;
+import com.influxdb.client.QueryApi;
 import com.influxdb.query.FluxRecord;
+import io.kestra.core.exceptions.IllegalVariableEvaluationException;
 import io.kestra.core.models.annotations.Plugin;
+import io.kestra.core.models.executions.metrics.Counter;
+import io.kestra.core.models.executions.metrics.Timer;
 import io.kestra.core.models.property.Property;
 import io.kestra.core.models.tasks.RunnableTask;
-import io.kestra.core.models.tasks.Task;
 import io.kestra.core.models.tasks.common.FetchType;
 import io.kestra.core.runners.RunContext;
 import io.kestra.core.serializers.FileSerde;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
+import lombok.extern.jackson.Jacksonized;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @SuperBuilder
 @ToString
@@ -47,125 +74,754 @@ import java.util.stream.Collectors;
                             |> filter(fn: (r) => r["_measurement"] == "cpu")
                             |> mean()
                 """
+        ),
+        @io.kestra.core.models.annotations.Example(
+            title = "Query a month of measurements in daily shards executed concurrently",
+            code = """
+                    id: sharded-query
+                    namespace: io.kestra.influxdb
+                    tasks:
+                      - id: query-metrics
+                        type: io.kestra.plugin.influxdb.FluxQuery
+                        url: http://localhost:8086
+                        token: my-token
+                        org: my-org
+                        bucket: my-bucket
+                        fetchType: STORE
+                        shard:
+                          start: "2025-03-01T00:00:00Z"
+                          stop: "2025-04-01T00:00:00Z"
+                          window: P1D
+                          parallelism: 8
+                        query: |
+                          from(bucket: "my-bucket")
+                            |> range(start: {{ shard.start }}, stop: {{ shard.stop }})
+                            |> filter(fn: (r) => r["_measurement"] == "cpu")
+                """
         )
     }
 )
-public class FluxQuery extends Task implements RunnableTask<FluxQuery.Output> {
+public class FluxQuery extends AbstractInfluxDBTask implements RunnableTask<FluxQuery.Output> {
 
     @Schema(
-        title = "InfluxDB URL",
-        description = "The URL of the InfluxDB server"
+        title = "Flux query",
+        description = "The Flux query to execute"
     )
-    @Builder.Default
-    private String url = "http://localhost:8086";
+    private Property<String> query;
 
     @Schema(
-        title = "InfluxDB token",
-        description = "The authentication token for InfluxDB"
+        title = "The way you want to store the data.",
+        description = "FETCH_ONE output the first row, "
+            + "FETCH output all the rows, "
+            + "STORE store all rows in a file, "
+            + "NONE do nothing."
     )
     @Builder.Default
-    private String token = "my-token";
+    private Property<FetchType> fetchType = Property.of(FetchType.FETCH);
 
     @Schema(
-        title = "InfluxDB organization",
-        description = "The organization name in InfluxDB"
+        title = "Format of the file when using STORE",
+        description = "ION converts every record to a row of an ION file. " +
+            "CSV copies the annotated CSV returned by InfluxDB as is, without decoding it, which is much cheaper on " +
+            "large exports but ignores `columns`. " +
+            "Use the serdes plugin to convert the ION file to Avro, Parquet or any other format."
     )
     @Builder.Default
-    private String org = "my-org";
+    private Property<Format> format = Property.of(Format.ION);
 
     @Schema(
-        title = "InfluxDB bucket",
-        description = "The bucket name in InfluxDB"
+        title = "Columns to keep in the output rows",
+        description = "Only these columns are copied in the rows, for example to leave out `_start`, `_stop`, " +
+            "`result` and `table`. All the columns are kept if not set."
     )
-    @Builder.Default
-    private String bucket = "my-bucket";
+    private Property<List<String>> columns;
 
     @Schema(
-        title = "Flux query",
-        description = "The Flux query to execute"
+        title = "Maximum number of rows kept in memory with FETCH",
+        description = "Beyond it the rows are written to an ION file in the internal storage instead, and its URI is " +
+            "output as `uri` while `rows` is not set. No limit if not set."
     )
-    private Property<String> query;
+    private Property<Integer> maxFetchRows;
 
     @Schema(
-        title = "The way you want to store the data.",
-        description = "FETCH_ONE output the first row, "
-            + "FETCH output all the rows, "
-            + "STORE store all rows in a file, "
-            + "NONE do nothing."
+        title = "Maximum estimated heap size in bytes of the rows kept in memory with FETCH",
+        description = "Beyond it the rows are written to an ION file in the internal storage instead, and its URI is " +
+            "output as `uri` while `rows` is not set. The labels and repeated values are shared between the rows, " +
+            "so the estimate is mostly driven by the distinct values. With `shard`, each shard gets an equal part of " +
+            "it. No limit if not set."
     )
-    @Builder.Default
-    private Property<FetchType> fetchType = Property.of(FetchType.FETCH);
+    private Property<Long> maxFetchBytes;
+
+    @Schema(
+        title = "Split the query in time shards executed concurrently",
+        description = "The query is executed once per `window` between `start` and `stop`, the bounds of each shard " +
+            "being available in the query as `{{ shard.start }}` and `{{ shard.stop }}`. " +
+            "The results are merged back in shard order and a failed shard is retried on its own."
+    )
+    private Shard shard;
+
+    @Schema(
+        title = "Cache the result of queries over a past time range",
+        description = "Only used when the query can't return anything new: all its `range()` calls have an absolute " +
+            "`stop` date in the past, or the `shard` stop is in the past. The result is cached by URL, organization, " +
+            "rendered query and output settings, and returned again from the internal storage without querying " +
+            "InfluxDB until it expires."
+    )
+    private QueryCache cache;
 
     @Override
     public FluxQuery.Output run(RunContext runContext) throws Exception {
-        var query = runContext.render(this.query).as(String.class).orElseThrow();
         var fetchTypeValue = runContext.render(fetchType).as(FetchType.class).orElseThrow();
+        var columnsValue = runContext.render(columns).asList(String.class);
+        var formatValue = runContext.render(format).as(Format.class).orElseThrow();
+        var limit = new FetchLimit(
+            runContext.render(maxFetchRows).as(Integer.class).orElse(null),
+            runContext.render(maxFetchBytes).as(Long.class).orElse(null)
+        );
+        var timings = new Timings();
+        var clientKey = this.clientKey(runContext);
+        var tags = metricTags(clientKey);
 
-        try (var influxDBClient = InfluxDBClientFactory.create(
-            url,
-            token.toCharArray(),
-            org,
-            bucket
-        )) {
-            var queryApi = influxDBClient.getQueryApi();
-            var tables = queryApi.query(query);
-
-            if (tables.isEmpty()) {
-                return Output.builder()
-                    .count(0)
-                    .build();
-            }
-
-            var rows = tables.stream()
-                .flatMap(table -> table.getRecords().stream())
-                .map(this::recordToMap)
-                .toList();
-
-            if (rows.isEmpty()) {
-                return Output.builder()
-                    .count(0)
-                    .build();
-            }
-
-            var uri = "";
-            if (fetchTypeValue == FetchType.STORE) {
-                var tempFile = runContext.workingDir().createTempFile(".ion").toFile();
-                try (var output = new FileOutputStream(tempFile)) {
-                    FileSerde.write(output, rows);
-                    uri = runContext.storage().putFile(tempFile).toString();
-                }
+        var resultCache = this.resultCache(runContext, clientKey, fetchTypeValue, formatValue, columnsValue, limit);
+        if (resultCache != null) {
+            var cached = resultCache.get(fetchTypeValue, formatValue);
+            runContext.metric(Counter.of(cached.isPresent() ? "cache.hits" : "cache.misses", 1, tags));
+
+            if (cached.isPresent()) {
+                runContext.logger().info("Returning the cached result of {} rows", cached.get().getCount());
+                return cached.get();
             }
+        }
+
+        Output output;
+        File file;
+        try (var lease = this.client(clientKey)) {
+            var queryApi = lease.client().getQueryApi();
 
-            return Output.builder()
-                .count(rows.size())
-                .row(fetchTypeValue == FetchType.FETCH_ONE ? rows.isEmpty() ? null : rows.getFirst() : null)
-                .rows(fetchTypeValue == FetchType.FETCH ? rows : null)
-                .uri(fetchTypeValue == FetchType.STORE ? uri : null)
+            if (shard != null) {
+                file = resultFile(runContext, fetchTypeValue, formatValue, limit);
+                output = sharded(runContext, queryApi, fetchTypeValue, formatValue, columnsValue, limit, file, timings);
+            } else {
+                var query = runContext.render(this.query).as(String.class).orElseThrow();
+                file = resultFile(runContext, fetchTypeValue, formatValue, limit);
+
+                output = execute(queryApi, query, fetchTypeValue, formatValue, new FluxRecordConverter(columnsValue, fetchTypeValue == FetchType.FETCH), limit, file, timings);
+            }
+        }
+
+        if (resultCache != null) {
+            resultCache.put(fetchTypeValue, output, file);
+        }
+
+        if (file != null && output.getRows() == null) {
+            if (fetchTypeValue == FetchType.FETCH) {
+                runContext.logger().info("The {} rows are over the FETCH limits, they are stored in a file instead", output.getCount());
+            }
+
+            output = output.toBuilder()
+                .uri(upload(runContext, file, timings))
                 .build();
+        } else if (file != null) {
+            Files.delete(file.toPath());
         }
+
+        timings.report(runContext, tags, output.getCount());
+
+        return output;
+    }
+
+    /**
+     * @return the file the rows are written to with STORE, or spilled to with FETCH, {@code null} if not needed
+     */
+    private static File resultFile(RunContext runContext, FetchType fetchType, Format format, FetchLimit limit) throws IOException {
+        if (fetchType == FetchType.STORE) {
+            return runContext.workingDir().createTempFile(format.extension()).toFile();
+        }
+        if (fetchType == FetchType.FETCH && limit.isSet()) {
+            return runContext.workingDir().createTempFile(Format.ION.extension()).toFile();
+        }
+        return null;
+    }
+
+    /**
+     * @return the cache of the result of this query, {@code null} if disabled or if the result may still change
+     */
+    private QueryResultCache resultCache(RunContext runContext, InfluxDBClientPool.Key clientKey, FetchType fetchType, Format format, List<String> columns, FetchLimit limit) throws Exception {
+        if (cache == null || fetchType == FetchType.NONE) {
+            return null;
+        }
+
+        String query;
+        Instant stop;
+        if (shard != null) {
+            // the shard bounds are rendered per shard, the query template and the shard settings identify the result
+            stop = Instant.parse(runContext.render(shard.getStop()).as(String.class).orElseThrow());
+            query = String.join(
+                "|",
+                this.query.toString(),
+                runContext.render(shard.getStart()).as(String.class).orElseThrow(),
+                stop.toString(),
+                runContext.render(shard.getWindow()).as(Duration.class).orElseThrow().toString()
+            );
+        } else {
+            query = runContext.render(this.query).as(String.class).orElseThrow();
+            stop = QueryResultCache.rangeStop(query);
+        }
+
+        return QueryResultCache.of(
+            runContext, cache, stop,
+            clientKey.url(), clientKey.org(), clientKey.bucket(), query, fetchType.name(), format.name(), String.join(",", columns),
+            // a result kept in memory under a limit may have to be spilled under another one
+            String.valueOf(limit.maxRows()), String.valueOf(limit.maxBytes())
+        );
+    }
+
+    static String upload(RunContext runContext, File file, Timings timings) throws IOException {
+        var started = System.nanoTime();
+        var uri = runContext.storage().putFile(file).toString();
+        timings.upload.add(System.nanoTime() - started);
+        return uri;
+    }
+
+    private Output sharded(
+        RunContext runContext,
+        QueryApi queryApi,
+        FetchType fetchType,
+        Format format,
+        List<String> columns,
+        FetchLimit limit,
+        File merged,
+        Timings timings
+    ) throws Exception {
+        var ranges = shard.ranges(runContext);
+        // the shards are kept in memory together before being merged
+        var shardLimit = new FetchLimit(limit.maxRows(), limit.maxBytes() == null ? null : limit.maxBytes() / ranges.size());
+        var parallelism = runContext.render(shard.getParallelism()).as(Integer.class).orElseThrow();
+        var maxRetries = runContext.render(shard.getMaxRetries()).as(Integer.class).orElseThrow();
+
+        runContext.logger().info("Executing the query in {} shards with a parallelism of {}", ranges.size(), parallelism);
+
+        var files = new ArrayList<File>(ranges.size());
+        var outputs = new ArrayList<Output>(ranges.size());
+        var permits = new Semaphore(parallelism);
+
+        try {
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                var futures = new ArrayList<Future<Output>>(ranges.size());
+
+                for (var range : ranges) {
+                    var query = render(runContext, this.query, Map.of(
+                        "shard", Map.of("start", range.start().toString(), "stop", range.stop().toString())
+                    ));
+                    var file = resultFile(runContext, fetchType, format, shardLimit);
+                    files.add(file);
+
+                    futures.add(executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            return executeShard(runContext, queryApi, query, fetchType, format, columns, shardLimit, file, timings, range, maxRetries);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                }
+
+                try {
+                    for (var future : futures) {
+                        try {
+                            outputs.add(future.get());
+                        } catch (ExecutionException e) {
+                            throw e.getCause() instanceof Exception exception ? exception : e;
+                        }
+                    }
+                } catch (Exception e) {
+                    // a failed shard or a killed task, interrupt the other shards, which cancels their queries
+                    executor.shutdownNow();
+                    throw e;
+                }
+            }
+
+            var output = Output.builder()
+                .count(outputs.stream().mapToInt(Output::getCount).sum());
+
+            switch (fetchType) {
+                case FETCH_ONE -> {
+                    var row = outputs.stream().map(Output::getRow).filter(Objects::nonNull).findFirst().orElse(null);
+                    output.row(row).count(row == null ? 0 : 1);
+                }
+                case FETCH -> {
+                    var count = outputs.stream().mapToInt(Output::getCount).sum();
+                    if (outputs.stream().allMatch(shardOutput -> shardOutput.getRows() != null) && !limit.exceeded(count, 0)) {
+                        output.rows(outputs.stream().flatMap(shardOutput -> shardOutput.getRows().stream()).toList());
+                        for (var file : files) {
+                            if (file != null) {
+                                Files.delete(file.toPath());
+                            }
+                        }
+                    } else {
+                        // some shards spilled or there are too many rows together, merge them all in the file
+                        try (var stream = new BufferedOutputStream(new FileOutputStream(merged), FileSerde.BUFFER_SIZE)) {
+                            for (int i = 0; i < outputs.size(); i++) {
+                                if (outputs.get(i).getRows() != null) {
+                                    for (var row : outputs.get(i).getRows()) {
+                                        FileSerde.write(stream, row);
+                                    }
+                                } else {
+                                    Files.copy(files.get(i).toPath(), stream);
+                                }
+                                Files.delete(files.get(i).toPath());
+                            }
+                        }
+                    }
+                }
+                case STORE -> {
+                    try (var stream = new FileOutputStream(merged)) {
+                        for (var file : files) {
+                            Files.copy(file.toPath(), stream);
+                            Files.delete(file.toPath());
+                        }
+                    }
+                }
+                case NONE -> {
+                }
+            }
+
+            return output.build();
+        } catch (Exception e) {
+            // the other shards were interrupted, which cancels their queries, only their files are left
+            for (var file : files) {
+                if (file != null) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+            if (merged != null) {
+                Files.deleteIfExists(merged.toPath());
+            }
+            throw e;
+        }
+    }
+
+    private Output executeShard(
+        RunContext runContext,
+        QueryApi queryApi,
+        String query,
+        FetchType fetchType,
+        Format format,
+        List<String> columns,
+        FetchLimit limit,
+        File file,
+        Timings timings,
+        Shard.Range range,
+        int maxRetries
+    ) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return execute(queryApi, query, fetchType, format, new FluxRecordConverter(columns, fetchType == FetchType.FETCH), limit, file, timings);
+            } catch (Exception e) {
+                if (attempt >= maxRetries || e instanceof InterruptedException) {
+                    throw e;
+                }
+
+                var backoff = Duration.ofSeconds(1L << Math.min(attempt, 5));
+                runContext.logger().warn(
+                    "Shard [{}, {}) failed, retrying in {} ({}/{}): {}",
+                    range.start(), range.stop(), backoff, attempt + 1, maxRetries, e.getMessage()
+                );
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * Execute a single query, the records being written to {@code file} with {@link FetchType#STORE} or with
+     * {@link FetchType#FETCH} over the limit, which is left to the caller to upload.
+     */
+    static Output execute(
+        QueryApi queryApi,
+        String query,
+        FetchType fetchType,
+        Format format,
+        FluxRecordConverter converter,
+        FetchLimit limit,
+        File file,
+        Timings timings
+    ) throws Exception {
+        return switch (fetchType) {
+            case FETCH_ONE -> fetchOne(queryApi, query, converter, timings);
+            case FETCH -> fetch(queryApi, query, converter, limit, file, timings);
+            case STORE -> format == Format.CSV ? storeCsv(queryApi, query, file, timings) : store(queryApi, query, converter, file, timings);
+            case NONE -> Output.builder()
+                .count(stream(queryApi, query, timings, (cancellable, record) -> {}))
+                .build();
+        };
     }
 
-    private Map<String, Object> recordToMap(FluxRecord record) {
-        return record.getValues().entrySet().stream()
-            .filter(entry -> entry.getValue() != null)
-            .collect(Collectors.toMap(
-                Map.Entry::getKey,
-                entry -> {
-                    Object value = entry.getValue();
-                    if (value instanceof Number) {
-                        if (value instanceof Float || value instanceof Double) {
-                            return ((Number) value).doubleValue();
-                        } else {
-                            return ((Number) value).longValue();
+    private static Output fetchOne(QueryApi queryApi, String query, FluxRecordConverter converter, Timings timings) throws Exception {
+        var first = new AtomicReference<Map<String, Object>>();
+
+        var count = stream(queryApi, query, timings, (cancellable, record) -> {
+            first.set(converter.convert(record));
+            // we only need the first record, stop the HTTP stream right away
+            cancellable.cancel();
+        });
+
+        return Output.builder()
+            .count(count)
+            .row(first.get())
+            .build();
+    }
+
+    /**
+     * Keep the rows in memory until the limit, then write them and the next ones to {@code file}, the output having
+     * no rows in that case.
+     */
+    private static Output fetch(QueryApi queryApi, String query, FluxRecordConverter converter, FetchLimit limit, File file, Timings timings) throws Exception {
+        var rows = new ArrayList<Map<String, Object>>();
+        var spill = new AtomicReference<BufferedOutputStream>();
+
+        int count;
+        try {
+            count = stream(queryApi, query, timings, (cancellable, record) -> {
+                var started = System.nanoTime();
+                var row = converter.convert(record);
+
+                try {
+                    if (spill.get() != null) {
+                        FileSerde.write(spill.get(), row);
+                    } else {
+                        rows.add(row);
+
+                        if (limit.exceeded(rows.size(), converter.estimatedBytes())) {
+                            spill.set(new BufferedOutputStream(new FileOutputStream(file), FileSerde.BUFFER_SIZE));
+                            for (var kept : rows) {
+                                FileSerde.write(spill.get(), kept);
+                            }
+                            rows.clear();
+                            rows.trimToSize();
                         }
                     }
-                    return value;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+                timings.convert.add(System.nanoTime() - started);
+            });
+        } finally {
+            if (spill.get() != null) {
+                spill.get().close();
+            }
+        }
+
+        return Output.builder()
+            .count(count)
+            .rows(spill.get() == null ? rows : null)
+            .build();
+    }
+
+    private static Output store(QueryApi queryApi, String query, FluxRecordConverter converter, File file, Timings timings) throws Exception {
+        int count;
+        try (var output = new BufferedOutputStream(new FileOutputStream(file), FileSerde.BUFFER_SIZE)) {
+            count = stream(queryApi, query, timings, (cancellable, record) -> {
+                try {
+                    var started = System.nanoTime();
+                    FileSerde.write(output, converter.convert(record));
+                    timings.convert.add(System.nanoTime() - started);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        return Output.builder()
+            .count(count)
+            .build();
+    }
+
+    private static Output storeCsv(QueryApi queryApi, String query, File file, Timings timings) throws Exception {
+        var count = new AtomicInteger();
+        var started = System.nanoTime();
+
+        try (var output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), FileSerde.BUFFER_SIZE)) {
+            // each table starts with its annotations and a header line and ends with an empty line
+            var header = new AtomicBoolean(true);
+            var cancellation = new Cancellation();
+
+            await(cancellation, (onError, onComplete) -> queryApi.queryRaw(
+                query,
+                (cancellable, line) -> {
+                    if (cancellation.cancelled(cancellable)) {
+                        return;
+                    }
+                    if (timings.received.sum() == 0) {
+                        timings.firstRow(System.nanoTime() - started);
+                    }
+                    // the line terminator is not part of the line
+                    timings.received.add(LineProtocolBatcher.utf8Length(line) + 1);
+
+                    if (line.isEmpty() || line.charAt(0) == '#') {
+                        header.set(true);
+                    } else if (header.get()) {
+                        header.set(false);
+                    } else {
+                        count.incrementAndGet();
+                    }
+
+                    try {
+                        output.write(line);
+                        output.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                onError,
+                onComplete
             ));
+        }
+        timings.query.add(System.nanoTime() - started);
+
+        return Output.builder()
+            .count(count.get())
+            .build();
+    }
+
+    /**
+     * Render the query with additional variables. {@link Property} keeps the first rendered value, so rendering it
+     * through {@code runContext.render(property).as(...)} with different variables would always return the first one.
+     */
+    static String render(RunContext runContext, Property<String> query, Map<String, Object> variables) throws IllegalVariableEvaluationException {
+        return runContext.render(query.toString(), variables);
+    }
+
+    /**
+     * Execute the query with the streaming API of the client, each record is handed to {@code onNext} as soon as it
+     * is parsed, so nothing is buffered in memory. Blocks until the stream is completed, failed or cancelled.
+     *
+     * @return the number of records received
+     */
+    static int stream(QueryApi queryApi, String query, BiConsumer<Cancellable, FluxRecord> onNext) throws Exception {
+        return stream(queryApi, query, new Cancellation(), new Timings(), onNext);
+    }
+
+    /**
+     * Same as {@link #stream(QueryApi, String, BiConsumer)}, the query being cancelled as well by {@code cancellation}.
+     */
+    static int stream(QueryApi queryApi, String query, Cancellation cancellation, BiConsumer<Cancellable, FluxRecord> onNext) throws Exception {
+        return stream(queryApi, query, cancellation, new Timings(), onNext);
+    }
+
+    private static int stream(QueryApi queryApi, String query, Timings timings, BiConsumer<Cancellable, FluxRecord> onNext) throws Exception {
+        return stream(queryApi, query, new Cancellation(), timings, onNext);
+    }
+
+    private static int stream(
+        QueryApi queryApi,
+        String query,
+        Cancellation cancellation,
+        Timings timings,
+        BiConsumer<Cancellable, FluxRecord> onNext
+    ) throws Exception {
+        var count = new AtomicInteger();
+        var started = System.nanoTime();
+
+        await(cancellation, (onError, onComplete) -> queryApi.query(
+            query,
+            (cancellable, record) -> {
+                if (cancellation.cancelled(cancellable)) {
+                    return;
+                }
+                if (count.incrementAndGet() == 1) {
+                    timings.firstRow(System.nanoTime() - started);
+                }
+                onNext.accept(cancellable, record);
+
+                // the client doesn't call onComplete on a cancelled stream
+                if (cancellable.isCancelled()) {
+                    onComplete.run();
+                }
+            },
+            onError,
+            onComplete
+        ));
+        timings.query.add(System.nanoTime() - started);
+
+        return count.get();
+    }
+
+    /**
+     * Start an asynchronous query with the given error and completion callbacks and block until one of them is called,
+     * rethrowing the error if any. If the waiting thread is interrupted, the query is cancelled so it doesn't keep
+     * streaming on the HTTP client thread.
+     */
+    private static void await(Cancellation cancellation, BiConsumer<Consumer<Throwable>, Runnable> query) throws Exception {
+        var failure = new AtomicReference<Throwable>();
+        var done = new CountDownLatch(1);
+
+        query.accept(
+            throwable -> {
+                failure.set(throwable);
+                done.countDown();
+            },
+            done::countDown
+        );
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            cancellation.cancel();
+            throw e;
+        }
+
+        if (failure.get() instanceof Exception exception) {
+            throw exception;
+        } else if (failure.get() != null) {
+            throw new Exception(failure.get());
+        }
+    }
+
+    /**
+     * Cancel a query from another thread. The client only hands out the {@link Cancellable} of a query with its
+     * records, so a query is cancelled right away if it already received one, or else on its first record, which is
+     * then dropped.
+     */
+    static final class Cancellation {
+        private volatile boolean cancelled;
+        private volatile Cancellable cancellable;
+
+        /**
+         * @return whether the query is cancelled, in which case the record must be ignored
+         */
+        boolean cancelled(Cancellable cancellable) {
+            this.cancellable = cancellable;
+            if (cancelled) {
+                cancellable.cancel();
+                return true;
+            }
+            return false;
+        }
+
+        void cancel() {
+            cancelled = true;
+            var current = cancellable;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    /**
+     * Ceilings of the rows kept in memory with FETCH, {@code null} for no ceiling.
+     */
+    record FetchLimit(Integer maxRows, Long maxBytes) {
+        static final FetchLimit NONE = new FetchLimit(null, null);
+
+        boolean isSet() {
+            return maxRows != null || maxBytes != null;
+        }
+
+        boolean exceeded(int rows, long bytes) {
+            return (maxRows != null && rows > maxRows) || (maxBytes != null && bytes > maxBytes);
+        }
     }
 
     @Builder
     @Getter
+    @Jacksonized
+    public static class Shard {
+        @Schema(
+            title = "Start of the time range, inclusive",
+            description = "An RFC3339 date, for example `2025-03-01T00:00:00Z`"
+        )
+        private Property<String> start;
+
+        @Schema(
+            title = "End of the time range, exclusive",
+            description = "An RFC3339 date, for example `2025-04-01T00:00:00Z`"
+        )
+        private Property<String> stop;
+
+        @Schema(
+            title = "Duration of each shard"
+        )
+        private Property<Duration> window;
+
+        @Schema(
+            title = "Maximum number of shards queried concurrently"
+        )
+        @Builder.Default
+        private Property<Integer> parallelism = Property.of(4);
+
+        @Schema(
+            title = "Maximum number of retries of a failed shard"
+        )
+        @Builder.Default
+        private Property<Integer> maxRetries = Property.of(3);
+
+        List<Range> ranges(RunContext runContext) throws IllegalVariableEvaluationException {
+            var startValue = Instant.parse(runContext.render(start).as(String.class).orElseThrow());
+            var stopValue = Instant.parse(runContext.render(stop).as(String.class).orElseThrow());
+            var windowValue = runContext.render(window).as(Duration.class).orElseThrow();
+
+            if (windowValue.isNegative() || windowValue.isZero()) {
+                throw new IllegalArgumentException("The shard window must be positive");
+            }
+            if (!stopValue.isAfter(startValue)) {
+                throw new IllegalArgumentException("The shard stop must be after its start");
+            }
+
+            var ranges = new ArrayList<Range>();
+            for (var current = startValue; current.isBefore(stopValue); current = current.plus(windowValue)) {
+                var next = current.plus(windowValue);
+                ranges.add(new Range(current, next.isAfter(stopValue) ? stopValue : next));
+            }
+            return ranges;
+        }
+
+        record Range(Instant start, Instant stop) {
+        }
+    }
+
+    /**
+     * Timings accumulated over all the queries of a run, the shards being executed concurrently.
+     */
+    static final class Timings {
+        private final AtomicLong firstRow = new AtomicLong(Long.MAX_VALUE);
+        private final LongAdder query = new LongAdder();
+        private final LongAdder convert = new LongAdder();
+        private final LongAdder upload = new LongAdder();
+        private final LongAdder received = new LongAdder();
+
+        void firstRow(long nanos) {
+            firstRow.accumulateAndGet(nanos, Math::min);
+        }
+
+        void report(RunContext runContext, String[] tags, int rows) {
+            runContext.metric(Counter.of("rows", rows, tags));
+            runContext.metric(Timer.of("query.duration", Duration.ofNanos(query.sum()), tags));
+            if (firstRow.get() != Long.MAX_VALUE) {
+                runContext.metric(Timer.of("first.row.duration", Duration.ofNanos(firstRow.get()), tags));
+            }
+            if (convert.sum() > 0) {
+                runContext.metric(Timer.of("convert.duration", Duration.ofNanos(convert.sum()), tags));
+            }
+            if (upload.sum() > 0) {
+                runContext.metric(Timer.of("upload.duration", Duration.ofNanos(upload.sum()), tags));
+            }
+            if (received.sum() > 0) {
+                runContext.metric(Counter.of("bytes.received", received.sum(), tags));
+            }
+        }
+    }
+
+    public enum Format {
+        ION,
+        CSV;
+
+        String extension() {
+            return "." + this.name().toLowerCase();
+        }
+    }
+
+    @Builder(toBuilder = true)
+    @Getter
     public static class Output implements io.kestra.core.models.tasks.Output {
         @Schema(
             title = "Measurements count",
@@ -187,8 +843,15 @@ public class FluxQuery extends Task implements RunnableTask<FluxQuery.Output> {
 
         @Schema(
             title = "URI to the stored file",
-            description = "URI to the file containing the results when using STORE"
+            description = "URI to the file containing the results when using STORE, or when using FETCH over " +
+                "`maxFetchRows` or `maxFetchBytes`"
         )
         private final String uri;
+
+        @Schema(
+            title = "Whether the result comes from the cache",
+            description = "Only with `cache`"
+        )
+        private final boolean cached;
     }
 }
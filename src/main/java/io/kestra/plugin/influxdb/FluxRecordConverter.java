@@ -0,0 +1,285 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.query.FluxRecord;
+
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Convert the records of a query into rows, numbers being widened to long or double.
+ * <p>
+ * All the records of a table share the same columns, so a column plan (labels, indexes and conversion of each column)
+ * is computed once per table and each row is then filled by column index into a compact array backed map sharing
+ * the labels of its table. The streaming query API only hands records, so the plan is built from the first record of
+ * each table and rebuilt whenever the table changes.
+ * <p>
+ * When the rows are retained, as with FETCH, the labels and the string values are interned per converter, so the tags,
+ * {@code _measurement} and {@code _field} values repeated on every row of a query are kept once, and a value equal to
+ * the one of the previous row in the same column, such as {@code _start} and {@code _stop}, is shared with it. The heap
+ * retained by the rows is then estimated as they are converted, so a large result can be spilled to a file before it
+ * exhausts the memory. Rows written out one by one skip both.
+ */
+final class FluxRecordConverter {
+    // bounds the interned strings of a column of unique values, later values are then only shared with the previous row
+    private static final int MAX_INTERNED = 1 << 16;
+
+    // object header, values array header and length, size and labels fields
+    private static final int ROW_BYTES = 48;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int STRING_BYTES = 40;
+    private static final int BOXED_BYTES = 16;
+    private static final int INSTANT_BYTES = 24;
+
+    private final Set<String> columns;
+    private final boolean retained;
+    private final Map<String, String> interned = new HashMap<>();
+    private long estimatedBytes;
+    private Plan plan;
+
+    /**
+     * @param columns the columns to keep, all of them if empty
+     */
+    FluxRecordConverter(Collection<String> columns) {
+        this(columns, false);
+    }
+
+    /**
+     * @param columns the columns to keep, all of them if empty
+     * @param retained whether the rows are kept in memory, to intern their values and estimate their size
+     */
+    FluxRecordConverter(Collection<String> columns, boolean retained) {
+        this.columns = columns == null || columns.isEmpty() ? null : Set.copyOf(columns);
+        this.retained = retained;
+    }
+
+    Map<String, Object> convert(FluxRecord record) {
+        var row = record.getRow();
+        if (plan == null || !plan.matches(record, row)) {
+            plan = new Plan(record, columns);
+        }
+
+        return plan.convert(row);
+    }
+
+    /**
+     * @return an estimate of the heap retained by the rows converted so far, the labels and interned values being
+     * counted once, always 0 if the rows are not retained
+     */
+    long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    private String intern(String value) {
+        if (!retained) {
+            return value;
+        }
+
+        var existing = interned.get(value);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (interned.size() < MAX_INTERNED) {
+            interned.put(value, value);
+        }
+        estimatedBytes += STRING_BYTES + value.length();
+        return value;
+    }
+
+    private void estimate(long bytes) {
+        if (retained) {
+            estimatedBytes += bytes;
+        }
+    }
+
+    private enum Conversion {
+        // not decided yet, the column only had null values so far
+        UNKNOWN,
+        NONE,
+        TO_DOUBLE,
+        TO_LONG
+    }
+
+    private final class Plan {
+        private final Integer table;
+        private final Object result;
+        private final int width;
+        private final String[] labels;
+        private final int[] indexes;
+        private final Conversion[] conversions;
+        private final Object[] previous;
+
+        private Plan(FluxRecord record, Set<String> columns) {
+            this.table = record.getTable();
+            this.result = record.getValues().get("result");
+            this.width = record.getRow().size();
+
+            var labels = new ArrayList<String>(width);
+            var indexes = new int[width];
+            var index = 0;
+            for (var label : record.getValues().keySet()) {
+                if (columns == null || columns.contains(label)) {
+                    indexes[labels.size()] = index;
+                    labels.add(intern(label));
+                }
+                index++;
+            }
+
+            this.labels = labels.toArray(String[]::new);
+            this.indexes = indexes;
+            this.conversions = new Conversion[this.labels.length];
+            Arrays.fill(conversions, Conversion.UNKNOWN);
+            this.previous = new Object[this.labels.length];
+        }
+
+        private boolean matches(FluxRecord record, List<Object> row) {
+            return Objects.equals(table, record.getTable()) &&
+                row.size() == width &&
+                Objects.equals(result, record.getValues().get("result"));
+        }
+
+        private Map<String, Object> convert(List<Object> row) {
+            var values = new Object[labels.length];
+            var size = 0;
+
+            for (int i = 0; i < labels.length; i++) {
+                var value = row.get(indexes[i]);
+                if (value == null) {
+                    continue;
+                }
+
+                if (conversions[i] == Conversion.UNKNOWN) {
+                    conversions[i] = conversion(value);
+                }
+
+                values[i] = switch (conversions[i]) {
+                    case TO_DOUBLE -> {
+                        estimate(BOXED_BYTES);
+                        yield ((Number) value).doubleValue();
+                    }
+                    case TO_LONG -> {
+                        estimate(BOXED_BYTES);
+                        yield ((Number) value).longValue();
+                    }
+                    default -> retained ? this.share(i, value) : value;
+                };
+                size++;
+            }
+
+            estimate(ROW_BYTES + (long) REFERENCE_BYTES * values.length);
+            return new Row(labels, values, size);
+        }
+
+        /**
+         * @return the value of the previous row of the column if equal, else the interned value for a string
+         */
+        private Object share(int column, Object value) {
+            if (value.equals(previous[column])) {
+                return previous[column];
+            }
+
+            if (value instanceof String string) {
+                value = intern(string);
+            } else {
+                estimatedBytes += value instanceof Instant ? INSTANT_BYTES : BOXED_BYTES;
+            }
+
+            previous[column] = value;
+            return value;
+        }
+
+        private static Conversion conversion(Object value) {
+            if (value instanceof Double || value instanceof Long || !(value instanceof Number)) {
+                return Conversion.NONE;
+            }
+
+            return value instanceof Float ? Conversion.TO_DOUBLE : Conversion.TO_LONG;
+        }
+    }
+
+    /**
+     * Read only map backed by the labels of its table and an array of values, null values are skipped.
+     */
+    static final class Row extends AbstractMap<String, Object> {
+        private final String[] labels;
+        private final Object[] values;
+        private final int size;
+
+        private Row(String[] labels, Object[] values, int size) {
+            this.labels = labels;
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Object get(Object key) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i].equals(key)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        private int next = advance(0);
+
+                        private int advance(int from) {
+                            while (from < values.length && values[from] == null) {
+                                from++;
+                            }
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < values.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            var entry = new SimpleImmutableEntry<>(labels[next], values[next]);
+                            next = advance(next + 1);
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.query.FluxRecord;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Convert the records of a query back into Line Protocol lines, to write them to another bucket.
+ * <p>
+ * The records must have the shape of the data stored in a bucket: one field value per record with the
+ * {@code _measurement}, {@code _field}, {@code _value} and {@code _time} columns, every other column but
+ * {@code result}, {@code table}, {@code _start} and {@code _stop} being a tag. As with {@link FluxRecordConverter}, the
+ * columns are planned once per table, with the tag keys renamed, escaped and sorted up front, and the escaped
+ * measurements and field keys are cached as they repeat across the records.
+ */
+final class FluxRecordLineConverter {
+    private static final Set<String> NOT_TAGS = Set.of("result", "table", "_start", "_stop", "_time", "_value", "_field", "_measurement");
+
+    private final String measurement;
+    private final Map<String, String> tags;
+    private final Map<String, String> fields;
+
+    private final Map<String, String> measurements = new HashMap<>();
+    private final Map<String, String> fieldPrefixes = new HashMap<>();
+    private final StringBuilder buffer = new StringBuilder(256);
+    private Plan plan;
+
+    /**
+     * @param measurement the measurement of all the lines, {@code null} to keep the one of each record
+     * @param tags the new key of the tags to rename
+     * @param fields the new key of the fields to rename
+     */
+    FluxRecordLineConverter(String measurement, Map<String, String> tags, Map<String, String> fields) {
+        this.measurement = measurement == null ? null : LineProtocolConverter.escape(measurement, false);
+        this.tags = tags == null ? Map.of() : tags;
+        this.fields = fields == null ? Map.of() : fields;
+    }
+
+    /**
+     * @return the record as a Line Protocol line without the trailing new line, {@code null} if it has no value that
+     * can be written
+     * @throws IllegalArgumentException if the record doesn't have the columns of the data stored in a bucket
+     */
+    String convert(FluxRecord record) {
+        var row = record.getRow();
+        if (plan == null || !plan.matches(record, row)) {
+            plan = new Plan(record, tags, measurement != null);
+        }
+
+        var value = row.get(plan.value);
+        var field = row.get(plan.field);
+        if (!LineProtocolConverter.writable(value) || field == null) {
+            return null;
+        }
+
+        buffer.setLength(0);
+        if (measurement != null) {
+            buffer.append(measurement);
+        } else {
+            var name = Objects.requireNonNull(row.get(plan.measurement), "The record has no measurement").toString();
+            buffer.append(measurements.computeIfAbsent(name, key -> LineProtocolConverter.escape(key, false)));
+        }
+
+        for (int i = 0; i < plan.tagIndexes.length; i++) {
+            var tag = row.get(plan.tagIndexes[i]);
+            if (tag == null || tag.toString().isEmpty()) {
+                continue;
+            }
+
+            buffer.append(plan.tagPrefixes[i]);
+            LineProtocolConverter.appendEscaped(buffer, plan.tagColumns[i], tag.toString(), true);
+        }
+
+        var fieldKey = field.toString();
+        buffer.append(' ').append(fieldPrefixes.computeIfAbsent(
+            fieldKey,
+            key -> LineProtocolConverter.escape(fields.getOrDefault(key, key), true) + "="
+        ));
+        LineProtocolConverter.appendValue(buffer, fieldKey, value);
+
+        if (row.get(plan.time) instanceof Instant time) {
+            buffer.append(' ').append(LineProtocolConverter.nanos(time));
+        }
+
+        return buffer.toString();
+    }
+
+    private static final class Plan {
+        private final Integer table;
+        private final Object result;
+        private final int width;
+
+        private final int measurement;
+        private final int field;
+        private final int value;
+        private final int time;
+
+        private final int[] tagIndexes;
+        private final String[] tagColumns;
+        private final String[] tagPrefixes;
+
+        private Plan(FluxRecord record, Map<String, String> renames, boolean measurementOverridden) {
+            this.table = record.getTable();
+            this.result = record.getValues().get("result");
+            this.width = record.getRow().size();
+
+            var labels = new ArrayList<>(record.getValues().keySet());
+            this.measurement = measurementOverridden ? -1 : index(labels, "_measurement");
+            this.field = index(labels, "_field");
+            this.value = index(labels, "_value");
+            this.time = index(labels, "_time");
+
+            // sorted by their new key, as InfluxDB ingests the tags faster this way
+            var tags = new ArrayList<Map.Entry<String, Integer>>();
+            for (int i = 0; i < labels.size(); i++) {
+                if (!NOT_TAGS.contains(labels.get(i))) {
+                    tags.add(Map.entry(labels.get(i), i));
+                }
+            }
+            tags.sort(Comparator.comparing(tag -> renames.getOrDefault(tag.getKey(), tag.getKey())));
+
+            this.tagIndexes = tags.stream().mapToInt(Map.Entry::getValue).toArray();
+            this.tagColumns = tags.stream().map(Map.Entry::getKey).toArray(String[]::new);
+            this.tagPrefixes = tags.stream()
+                .map(tag -> "," + LineProtocolConverter.escape(renames.getOrDefault(tag.getKey(), tag.getKey()), true) + "=")
+                .toArray(String[]::new);
+        }
+
+        private boolean matches(FluxRecord record, List<Object> row) {
+            return Objects.equals(table, record.getTable()) &&
+                row.size() == width &&
+                Objects.equals(result, record.getValues().get("result"));
+        }
+
+        private static int index(List<String> labels, String column) {
+            var index = labels.indexOf(column);
+            if (index < 0) {
+                throw new IllegalArgumentException(
+                    "The records have no '" + column + "' column, the query must return the data as stored in a bucket, " +
+                        "with the _measurement, _field, _value and _time columns, so without pivot()"
+                );
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.InfluxDBClientFactory;
+import com.influxdb.client.InfluxDBClientOptions;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cache of {@link InfluxDBClient} shared by all the tasks running on a worker.
+ * <p>
+ * Creating a client means a new OkHttp dispatcher, connection pool and TLS handshake, so clients are kept open and
+ * reused across task runs with the same connection settings. Each task holds a {@link Lease} for the duration of its
+ * run, a client is closed once it has no more leases and has been idle for longer than the idle timeout,
+ * or when the JVM shuts down.
+ */
+final class InfluxDBClientPool {
+    static final InfluxDBClientPool INSTANCE = new InfluxDBClientPool(Duration.ofMinutes(5));
+
+    static {
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "influxdb-client-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(INSTANCE::evictIdle, 30, 30, TimeUnit.SECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::closeAll, "influxdb-client-pool-shutdown"));
+    }
+
+    private final Duration idleTimeout;
+    private final Map<Key, Entry> entries = new HashMap<>();
+
+    InfluxDBClientPool(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    synchronized Lease acquire(Key key) {
+        var entry = entries.computeIfAbsent(key, k -> new Entry(k.create()));
+        entry.references++;
+
+        return new Lease(entry);
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.references--;
+        entry.lastReleased = System.nanoTime();
+    }
+
+    /**
+     * Close the clients that have no lease and have not been used since the idle timeout.
+     */
+    void evictIdle() {
+        var now = System.nanoTime();
+        var evicted = new ArrayList<InfluxDBClient>();
+
+        synchronized (this) {
+            entries.values().removeIf(entry -> {
+                if (entry.references == 0 && now - entry.lastReleased >= idleTimeout.toNanos()) {
+                    evicted.add(entry.client);
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        closeQuietly(evicted);
+    }
+
+    /**
+     * Close all the clients, even the ones still leased.
+     */
+    void closeAll() {
+        List<InfluxDBClient> clients;
+
+        synchronized (this) {
+            clients = entries.values().stream().map(entry -> entry.client).toList();
+            entries.clear();
+        }
+
+        closeQuietly(clients);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static void closeQuietly(List<InfluxDBClient> clients) {
+        for (var client : clients) {
+            try {
+                client.close();
+            } catch (Exception ignored) {
+                // the client is discarded anyway
+            }
+        }
+    }
+
+    /**
+     * Connection settings identifying a pooled client.
+     */
+    record Key(String url, String token, String org, String bucket, Transport transport) {
+        Key(String url, String token, String org, String bucket) {
+            this(url, token, org, bucket, Transport.DEFAULT);
+        }
+
+        InfluxDBClient create() {
+            var dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(transport.maxRequests());
+            dispatcher.setMaxRequestsPerHost(transport.maxRequests());
+
+            var okHttpClient = new OkHttpClient.Builder()
+                // like the default client of the library, the streamed queries don't support HTTP/2
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .connectTimeout(transport.connectTimeout())
+                .readTimeout(transport.readTimeout())
+                .writeTimeout(transport.writeTimeout())
+                .connectionPool(new ConnectionPool(transport.maxIdleConnections(), transport.keepAlive().toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher);
+
+            var client = InfluxDBClientFactory.create(InfluxDBClientOptions.builder()
+                .url(url)
+                .authenticateToken(token.toCharArray())
+                .org(org)
+                .bucket(bucket)
+                .okHttpClient(okHttpClient)
+                .build()
+            );
+
+            if (transport.gzip()) {
+                client.enableGzip();
+            }
+
+            return client;
+        }
+
+        @Override
+        public String toString() {
+            return "Key[url=" + url + ", org=" + org + ", bucket=" + bucket + ", transport=" + transport + "]";
+        }
+    }
+
+    /**
+     * HTTP settings of a pooled client, see {@link ClientOptions}.
+     */
+    record Transport(
+        boolean gzip,
+        Duration connectTimeout,
+        Duration readTimeout,
+        Duration writeTimeout,
+        int maxIdleConnections,
+        Duration keepAlive,
+        int maxRequests
+    ) {
+        static final Transport DEFAULT = new Transport(
+            false,
+            Duration.ofSeconds(10),
+            Duration.ofSeconds(10),
+            Duration.ofSeconds(10),
+            5,
+            Duration.ofMinutes(5),
+            64
+        );
+    }
+
+    private static class Entry {
+        private final InfluxDBClient client;
+        private int references;
+        private long lastReleased = System.nanoTime();
+
+        private Entry(InfluxDBClient client) {
+            this.client = client;
+        }
+    }
+
+    /**
+     * A reference on a pooled client, closing it gives the client back to the pool without closing the client.
+     */
+    final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        InfluxDBClient client() {
+            return entry.client;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(entry);
+            }
+        }
+    }
+}
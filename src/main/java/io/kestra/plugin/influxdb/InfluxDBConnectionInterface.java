@@ -0,0 +1,58 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.exceptions.IllegalVariableEvaluationException;
+import io.kestra.core.models.annotations.PluginProperty;
+import io.kestra.core.runners.RunContext;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * The connection settings shared by the tasks and the triggers.
+ */
+public interface InfluxDBConnectionInterface {
+    @Schema(
+        title = "InfluxDB URL",
+        description = "The URL of the InfluxDB server"
+    )
+    @PluginProperty(dynamic = true)
+    String getUrl();
+
+    @Schema(
+        title = "InfluxDB token",
+        description = "The authentication token for InfluxDB"
+    )
+    @PluginProperty(dynamic = true)
+    String getToken();
+
+    @Schema(
+        title = "InfluxDB organization",
+        description = "The organization name in InfluxDB"
+    )
+    @PluginProperty(dynamic = true)
+    String getOrg();
+
+    @Schema(
+        title = "InfluxDB bucket",
+        description = "The bucket name in InfluxDB"
+    )
+    @PluginProperty(dynamic = true)
+    String getBucket();
+
+    @Schema(
+        title = "HTTP options of the client",
+        description = "Compression, timeouts and connection pool settings"
+    )
+    ClientOptions getOptions();
+
+    /**
+     * @return the key of the pooled client, with the connection settings rendered
+     */
+    default InfluxDBClientPool.Key clientKey(RunContext runContext) throws IllegalVariableEvaluationException {
+        return new InfluxDBClientPool.Key(
+            runContext.render(this.getUrl()),
+            runContext.render(this.getToken()),
+            runContext.render(this.getOrg()),
+            runContext.render(this.getBucket()),
+            AbstractInfluxDBTask.transport(runContext, this.getOptions())
+        );
+    }
+}
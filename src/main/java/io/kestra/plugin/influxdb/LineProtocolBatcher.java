@@ -0,0 +1,98 @@
+package io.kestra.plugin.influxdb;
+
+import java.time.Duration;
+
+/**
+ * Group Line Protocol lines into batches bounded by a number of points, a number of bytes and optionally a delay.
+ * <p>
+ * The lines are appended into a single reused buffer, a batch is emitted when adding a line would exceed one of the
+ * limits so a batch never goes over the limits unless a single line does.
+ */
+final class LineProtocolBatcher {
+    private int maxPoints;
+    private final long maxBytes;
+    private final long maxDelayNanos;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private int points;
+    private long bytes;
+    private long startedAt;
+
+    LineProtocolBatcher(int maxPoints, long maxBytes, Duration maxDelay) {
+        this.maxPoints = maxPoints;
+        this.maxBytes = maxBytes;
+        this.maxDelayNanos = maxDelay == null ? Long.MAX_VALUE : maxDelay.toNanos();
+    }
+
+    /**
+     * Change the maximum number of points, the current batch is emitted on the next line if it is already over it.
+     */
+    void maxPoints(int maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Add a line to the current batch.
+     *
+     * @return the previous batch if the line didn't fit in it, {@code null} otherwise
+     */
+    Batch add(String line) {
+        var lineBytes = utf8Length(line) + 1;
+
+        Batch full = null;
+        if (points > 0 && (
+            points >= maxPoints ||
+                bytes + lineBytes > maxBytes ||
+                (maxDelayNanos != Long.MAX_VALUE && System.nanoTime() - startedAt >= maxDelayNanos)
+        )) {
+            full = flush();
+        }
+
+        if (points == 0) {
+            startedAt = System.nanoTime();
+        }
+
+        buffer.append(line).append('\n');
+        points++;
+        bytes += lineBytes;
+
+        return full;
+    }
+
+    /**
+     * @return the current batch, {@code null} if it's empty
+     */
+    Batch flush() {
+        if (points == 0) {
+            return null;
+        }
+
+        var batch = new Batch(buffer.toString(), points, bytes);
+
+        buffer.setLength(0);
+        points = 0;
+        bytes = 0;
+
+        return batch;
+    }
+
+    static int utf8Length(CharSequence line) {
+        var length = line.length();
+        for (int i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (c >= 0x800) {
+                // a surrogate pair is 2 chars for 4 bytes
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length += 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param lines the Line Protocol lines, each one terminated by a new line
+     */
+    record Batch(String lines, int points, long bytes) {
+    }
+}
@@ -0,0 +1,253 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.client.domain.WritePrecision;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Convert rows into Line Protocol lines appended to a caller provided buffer.
+ * <p>
+ * The mapping is compiled once: the measurement, the tag keys and the field keys are escaped up front, and the tags
+ * are sorted by key as InfluxDB ingests them faster this way. Each row is then written by column with the values
+ * escaped directly into the buffer, without any intermediate string or point object.
+ */
+final class LineProtocolConverter {
+    private final String measurement;
+    private final String[] tagColumns;
+    private final String[] tagPrefixes;
+    private final String[] fieldColumns;
+    private final String[] fieldPrefixes;
+    private final String timestampColumn;
+    private final long nanosPerUnit;
+
+    // with no field list, every other column is a field and its escaped key is cached on first use
+    private final Set<String> excluded;
+    private final Map<String, String> dynamicPrefixes;
+
+    LineProtocolConverter(String measurement, List<String> tags, List<String> fields, String timestamp, WritePrecision precision) {
+        this.measurement = escape(measurement, false);
+
+        var sortedTags = tags.stream().distinct().sorted(Comparator.naturalOrder()).toArray(String[]::new);
+        this.tagColumns = sortedTags;
+        this.tagPrefixes = Arrays.stream(sortedTags).map(tag -> "," + escape(tag, true) + "=").toArray(String[]::new);
+
+        if (fields == null || fields.isEmpty()) {
+            this.fieldColumns = null;
+            this.fieldPrefixes = null;
+            this.excluded = new HashSet<>(tags);
+            if (timestamp != null) {
+                this.excluded.add(timestamp);
+            }
+            this.dynamicPrefixes = new HashMap<>();
+        } else {
+            this.fieldColumns = fields.toArray(String[]::new);
+            this.fieldPrefixes = fields.stream().map(field -> escape(field, true) + "=").toArray(String[]::new);
+            this.excluded = null;
+            this.dynamicPrefixes = null;
+        }
+
+        this.timestampColumn = timestamp;
+        this.nanosPerUnit = switch (precision) {
+            case NS -> 1L;
+            case US -> 1_000L;
+            case MS -> 1_000_000L;
+            case S -> 1_000_000_000L;
+        };
+    }
+
+    /**
+     * Append the row as a Line Protocol line ending with a new line.
+     *
+     * @return {@code false} if the row has no field and nothing has been appended
+     * @throws IllegalArgumentException if a value can't be written as Line Protocol
+     */
+    boolean convert(Map<?, ?> row, StringBuilder buffer) {
+        var start = buffer.length();
+        buffer.append(measurement);
+
+        for (int i = 0; i < tagColumns.length; i++) {
+            var value = row.get(tagColumns[i]);
+            if (value == null) {
+                continue;
+            }
+
+            var position = buffer.length();
+            buffer.append(tagPrefixes[i]);
+            var valueStart = buffer.length();
+            appendEscaped(buffer, tagColumns[i], value.toString(), true);
+            if (buffer.length() == valueStart) {
+                // empty tag values are not allowed
+                buffer.setLength(position);
+            }
+        }
+
+        buffer.append(' ');
+        var fieldsStart = buffer.length();
+
+        if (fieldColumns != null) {
+            for (int i = 0; i < fieldColumns.length; i++) {
+                this.appendField(buffer, fieldsStart, fieldColumns[i], fieldPrefixes[i], row.get(fieldColumns[i]));
+            }
+        } else {
+            for (var entry : row.entrySet()) {
+                var column = String.valueOf(entry.getKey());
+                if (!excluded.contains(column)) {
+                    var prefix = dynamicPrefixes.computeIfAbsent(column, key -> escape(key, true) + "=");
+                    this.appendField(buffer, fieldsStart, column, prefix, entry.getValue());
+                }
+            }
+        }
+
+        if (buffer.length() == fieldsStart) {
+            buffer.setLength(start);
+            return false;
+        }
+
+        if (timestampColumn != null) {
+            var value = row.get(timestampColumn);
+            if (value != null) {
+                buffer.append(' ').append(this.nanos(value));
+            }
+        }
+
+        buffer.append('\n');
+        return true;
+    }
+
+    private void appendField(StringBuilder buffer, int fieldsStart, String column, String prefix, Object value) {
+        if (!writable(value)) {
+            return;
+        }
+
+        if (buffer.length() > fieldsStart) {
+            buffer.append(',');
+        }
+        buffer.append(prefix);
+        appendValue(buffer, column, value);
+    }
+
+    /**
+     * @return {@code false} for the values that can't be written as a field, null, NaN and infinite numbers
+     */
+    static boolean writable(Object value) {
+        return value != null && !(value instanceof Double d && !Double.isFinite(d)) && !(value instanceof Float f && !Float.isFinite(f));
+    }
+
+    /**
+     * Append a field value with the Line Protocol type of its Java type, a string if it has none.
+     */
+    static void appendValue(StringBuilder buffer, String column, Object value) {
+        switch (value) {
+            case Boolean b -> buffer.append(b.booleanValue());
+            case Long l -> buffer.append(l.longValue()).append('i');
+            case Integer i -> buffer.append(i.intValue()).append('i');
+            case Short s -> buffer.append(s.shortValue()).append('i');
+            case Byte b -> buffer.append(b.byteValue()).append('i');
+            case BigInteger i -> buffer.append(i).append('i');
+            case Double d -> buffer.append(d.doubleValue());
+            case Float f -> buffer.append(f.floatValue());
+            case BigDecimal d -> buffer.append(d);
+            case Number n -> buffer.append(n.doubleValue());
+            default -> {
+                buffer.append('"');
+                appendString(buffer, column, value.toString());
+                buffer.append('"');
+            }
+        }
+    }
+
+    private long nanos(Object value) {
+        return switch (value) {
+            case Instant instant -> nanos(instant);
+            case ZonedDateTime dateTime -> nanos(dateTime.toInstant());
+            case OffsetDateTime dateTime -> nanos(dateTime.toInstant());
+            case LocalDateTime dateTime -> nanos(dateTime.toInstant(ZoneOffset.UTC));
+            case LocalDate date -> nanos(date.atStartOfDay(ZoneOffset.UTC).toInstant());
+            case Date date -> Math.multiplyExact(date.getTime(), 1_000_000L);
+            case Double d -> Math.round(d * nanosPerUnit);
+            case Float f -> Math.round(f.doubleValue() * nanosPerUnit);
+            case BigDecimal d -> d.multiply(BigDecimal.valueOf(nanosPerUnit)).longValue();
+            case Number n -> Math.multiplyExact(n.longValue(), nanosPerUnit);
+            case TemporalAccessor temporal -> nanos(Instant.from(temporal));
+            default -> this.parseTimestamp(value.toString());
+        };
+    }
+
+    private long parseTimestamp(String value) {
+        try {
+            return Math.multiplyExact(Long.parseLong(value), nanosPerUnit);
+        } catch (NumberFormatException ignored) {
+            // not an epoch
+        }
+
+        try {
+            return nanos(OffsetDateTime.parse(value).toInstant());
+        } catch (DateTimeParseException e) {
+            try {
+                return nanos(LocalDateTime.parse(value).toInstant(ZoneOffset.UTC));
+            } catch (DateTimeParseException ignored) {
+                throw new IllegalArgumentException("Invalid timestamp '" + value + "' in column '" + timestampColumn + "'", e);
+            }
+        }
+    }
+
+    static long nanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+
+    /**
+     * Append a measurement, a tag key, a tag value or a field key, escaping the equal signs for all but the measurement.
+     */
+    static void appendEscaped(StringBuilder buffer, String column, String value, boolean key) {
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == '\n' || c == '\r') {
+                throw newLine(column);
+            }
+            if (c == ',' || c == ' ' || (key && c == '=')) {
+                buffer.append('\\');
+            }
+            buffer.append(c);
+        }
+    }
+
+    private static void appendString(StringBuilder buffer, String column, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == '\n' || c == '\r') {
+                throw newLine(column);
+            }
+            if (c == '"' || c == '\\') {
+                buffer.append('\\');
+            }
+            buffer.append(c);
+        }
+    }
+
+    private static IllegalArgumentException newLine(String column) {
+        return new IllegalArgumentException("The column '" + column + "' contains a new line, which Line Protocol does not support");
+    }
+
+    static String escape(String value, boolean key) {
+        var escaped = new StringBuilder(value.length() + 4);
+        appendEscaped(escaped, value, value, key);
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,616 @@
+package io.kestra.plugin.influxdb;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Single pass parser of the InfluxDB Line Protocol.
+ * <p>
+ * The parser works on any {@link CharSequence} without regex nor intermediate strings: the parsed line is exposed
+ * through a reusable {@link Point} flyweight that only keeps offsets in the line, names and string values are only
+ * unescaped when read. Numbers, booleans and the timestamp are parsed in place.
+ *
+ * @see <a href="https://docs.influxdata.com/influxdb/v2/reference/syntax/line-protocol/">Line Protocol</a>
+ */
+final class LineProtocolParser {
+    // exact powers of ten, a mantissa below 2^53 divided by one of them is correctly rounded
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private LineProtocolParser() {
+    }
+
+    /**
+     * Parse a single line, without its line terminator, into the given point.
+     *
+     * @throws IllegalArgumentException if the line is not valid Line Protocol
+     */
+    static Point parse(CharSequence line, Point point) {
+        point.reset(line);
+
+        var length = line.length();
+        var position = 0;
+
+        if (length == 0) {
+            throw error("empty line", 0);
+        }
+        if (line.charAt(0) == '#') {
+            throw error("comment line", 0);
+        }
+
+        // measurement
+        var end = scan(line, position, false);
+        if (end == position) {
+            throw error("missing measurement", position);
+        }
+        point.measurementStart = position;
+        point.measurementEnd = end;
+        position = end;
+
+        // tag set
+        while (position < length && line.charAt(position) == ',') {
+            position++;
+
+            var keyEnd = scan(line, position, true);
+            if (keyEnd == position) {
+                throw error("missing tag key", position);
+            }
+            if (keyEnd >= length || line.charAt(keyEnd) != '=') {
+                throw error("missing tag value", keyEnd);
+            }
+
+            var valueEnd = scan(line, keyEnd + 1, false);
+            if (valueEnd == keyEnd + 1) {
+                throw error("missing tag value", valueEnd);
+            }
+
+            point.addTag(position, keyEnd, keyEnd + 1, valueEnd);
+            position = valueEnd;
+        }
+
+        position = skipSpaces(line, position);
+        if (position >= length) {
+            throw error("missing fields", position);
+        }
+
+        // field set
+        while (true) {
+            var keyEnd = scan(line, position, true);
+            if (keyEnd == position) {
+                throw error("missing field key", position);
+            }
+            if (keyEnd >= length || line.charAt(keyEnd) != '=') {
+                throw error("missing field value", keyEnd);
+            }
+
+            position = parseFieldValue(line, point, position, keyEnd, keyEnd + 1);
+
+            if (position < length && line.charAt(position) == ',') {
+                position++;
+            } else {
+                break;
+            }
+        }
+        point.fieldsEnd = position;
+
+        // timestamp
+        if (position < length) {
+            if (line.charAt(position) != ' ') {
+                throw error("unexpected character '" + line.charAt(position) + "'", position);
+            }
+
+            position = skipSpaces(line, position);
+            var timestampEnd = position;
+            while (timestampEnd < length && line.charAt(timestampEnd) != ' ') {
+                timestampEnd++;
+            }
+
+            if (timestampEnd > position) {
+                point.hasTimestamp = true;
+                point.timestamp = parseLong(line, position, timestampEnd, "timestamp");
+            }
+
+            if (skipSpaces(line, timestampEnd) < length) {
+                throw error("unexpected character after timestamp", timestampEnd);
+            }
+        }
+
+        return point;
+    }
+
+    private static int parseFieldValue(CharSequence line, Point point, int keyStart, int keyEnd, int start) {
+        var length = line.length();
+        if (start >= length) {
+            throw error("missing field value", start);
+        }
+
+        // string
+        if (line.charAt(start) == '"') {
+            var position = start + 1;
+            while (position < length && line.charAt(position) != '"') {
+                position += line.charAt(position) == '\\' ? 2 : 1;
+            }
+            if (position >= length) {
+                throw error("unterminated string field value", start);
+            }
+
+            point.addField(keyStart, keyEnd, FieldType.STRING, start + 1, position, 0, 0);
+            return position + 1;
+        }
+
+        var end = start;
+        while (end < length && line.charAt(end) != ',' && line.charAt(end) != ' ') {
+            end++;
+        }
+        if (end == start) {
+            throw error("missing field value", start);
+        }
+
+        var last = line.charAt(end - 1);
+        if (last == 'i' && end - start > 1 && isNumeric(line.charAt(start))) {
+            point.addField(keyStart, keyEnd, FieldType.INTEGER, start, end, parseLong(line, start, end - 1, "integer"), 0);
+        } else if (last == 'u' && end - start > 1 && isNumeric(line.charAt(start))) {
+            point.addField(keyStart, keyEnd, FieldType.UINTEGER, start, end, parseUnsignedLong(line, start, end - 1), 0);
+        } else if (isBoolean(line, start, end)) {
+            var value = line.charAt(start) == 't' || line.charAt(start) == 'T';
+            point.addField(keyStart, keyEnd, FieldType.BOOLEAN, start, end, value ? 1 : 0, 0);
+        } else {
+            point.addField(keyStart, keyEnd, FieldType.FLOAT, start, end, 0, parseDouble(line, start, end));
+        }
+
+        return end;
+    }
+
+    /**
+     * Hash the series key of a line, its measurement and tag set, without parsing the fields nor allocating.
+     * The tags are combined with a commutative operation so the hash doesn't depend on their order.
+     */
+    static int seriesHash(CharSequence line) {
+        var measurementEnd = scan(line, 0, false);
+        var hash = hash(line, 0, measurementEnd);
+
+        int tags = 0;
+        var position = measurementEnd;
+        while (position < line.length() && line.charAt(position) == ',') {
+            var tagEnd = scan(line, scan(line, position + 1, true) + 1, false);
+            tags += mix(hash(line, position + 1, Math.min(tagEnd, line.length())));
+            position = tagEnd;
+        }
+
+        return 31 * hash + tags;
+    }
+
+    /**
+     * Murmur3 finalizer, without it swapping the values of two tags would give the same sum.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * The murmur3 64 bits finalizer, spreading every input bit over the whole hash.
+     */
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long hash64(CharSequence line, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ line.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static int hash(CharSequence line, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * @return the end of an identifier starting at {@code start}, stopping on an unescaped comma, space or
+     * equal sign if {@code key} is set
+     */
+    private static int scan(CharSequence line, int start, boolean key) {
+        var length = line.length();
+        var position = start;
+        while (position < length) {
+            var c = line.charAt(position);
+            if (c == '\\' && position + 1 < length) {
+                position += 2;
+                continue;
+            }
+            if (c == ',' || c == ' ' || (key && c == '=')) {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipSpaces(CharSequence line, int position) {
+        while (position < line.length() && line.charAt(position) == ' ') {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isNumeric(char c) {
+        return c == '-' || c == '+' || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isBoolean(CharSequence line, int start, int end) {
+        return switch (end - start) {
+            case 1 -> {
+                var c = line.charAt(start);
+                yield c == 't' || c == 'T' || c == 'f' || c == 'F';
+            }
+            case 4 -> regionMatches(line, start, "true") || regionMatches(line, start, "True") || regionMatches(line, start, "TRUE");
+            case 5 -> regionMatches(line, start, "false") || regionMatches(line, start, "False") || regionMatches(line, start, "FALSE");
+            default -> false;
+        };
+    }
+
+    private static boolean regionMatches(CharSequence line, int start, String expected) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (line.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseLong(CharSequence line, int start, int end, String what) {
+        var position = start;
+        var negative = false;
+        if (position < end && (line.charAt(position) == '-' || line.charAt(position) == '+')) {
+            negative = line.charAt(position) == '-';
+            position++;
+        }
+        if (position >= end) {
+            throw error("invalid " + what, start);
+        }
+
+        // accumulate negatively to be able to parse Long.MIN_VALUE
+        long value = 0;
+        for (; position < end; position++) {
+            var digit = line.charAt(position) - '0';
+            if (digit < 0 || digit > 9) {
+                throw error("invalid " + what, start);
+            }
+            if (value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + digit) {
+                throw error(what + " out of range", start);
+            }
+            value = value * 10 - digit;
+        }
+
+        if (!negative && value == Long.MIN_VALUE) {
+            throw error(what + " out of range", start);
+        }
+
+        return negative ? value : -value;
+    }
+
+    private static long parseUnsignedLong(CharSequence line, int start, int end) {
+        long value = 0;
+        for (int position = start; position < end; position++) {
+            var digit = line.charAt(position) - '0';
+            if (digit < 0 || digit > 9) {
+                throw error("invalid unsigned integer", start);
+            }
+            if (Long.compareUnsigned(value, Long.divideUnsigned(-1L, 10)) > 0 || Long.compareUnsigned(value * 10, -1L - digit) > 0) {
+                throw error("unsigned integer out of range", start);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static double parseDouble(CharSequence line, int start, int end) {
+        // fast path for plain decimals, the common case, without allocation
+        var position = start;
+        var negative = false;
+        if (line.charAt(position) == '-' || line.charAt(position) == '+') {
+            negative = line.charAt(position) == '-';
+            position++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        var simple = position < end;
+        var hasDigit = false;
+        for (; position < end && simple; position++) {
+            var c = line.charAt(position);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa > 0 || scale >= 0) {
+                    digits++;
+                }
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                simple = false;
+            }
+        }
+
+        if (simple && hasDigit && digits <= 15 && scale < POWERS_OF_TEN.length) {
+            var value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : (double) mantissa;
+            return negative ? -value : value;
+        }
+
+        // exponents and long mantissas are left to the JDK, but not its other notations (hexadecimal, NaN, 1d...)
+        for (int i = start; i < end; i++) {
+            var c = line.charAt(i);
+            if (!(c >= '0' && c <= '9') && c != '.' && c != '-' && c != '+' && c != 'e' && c != 'E') {
+                throw error("invalid field value", start);
+            }
+        }
+
+        try {
+            var value = Double.parseDouble(line.subSequence(start, end).toString());
+            if (Double.isInfinite(value)) {
+                throw error("field value out of range", start);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw error("invalid field value", start);
+        }
+    }
+
+    private static IllegalArgumentException error(String message, int position) {
+        return new IllegalArgumentException(message + " at column " + (position + 1));
+    }
+
+    /**
+     * Unescape an identifier or a string field value, only allocating a new string if it contains escapes.
+     */
+    private static String unescape(CharSequence line, int start, int end) {
+        var escape = -1;
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == '\\') {
+                escape = i;
+                break;
+            }
+        }
+        if (escape < 0) {
+            return line.subSequence(start, end).toString();
+        }
+
+        var builder = new StringBuilder(end - start);
+        builder.append(line, start, escape);
+        for (int i = escape; i < end; i++) {
+            var c = line.charAt(i);
+            if (c == '\\' && i + 1 < end && isEscapable(line.charAt(i + 1))) {
+                c = line.charAt(++i);
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isEscapable(char c) {
+        return c == ',' || c == ' ' || c == '=' || c == '"' || c == '\\';
+    }
+
+    enum FieldType {
+        FLOAT,
+        INTEGER,
+        UINTEGER,
+        STRING,
+        BOOLEAN
+    }
+
+    /**
+     * Reusable view on the last parsed line, it is only valid until the next call to {@link #parse(CharSequence, Point)}.
+     */
+    static final class Point {
+        private CharSequence line;
+        private int measurementStart;
+        private int measurementEnd;
+
+        // key start, key end, value start, value end
+        private int[] tags = new int[4 * 8];
+        private int tagCount;
+
+        // key start, key end, value start, value end
+        private int[] fields = new int[4 * 8];
+        private FieldType[] fieldTypes = new FieldType[8];
+        private long[] longValues = new long[8];
+        private double[] doubleValues = new double[8];
+        private int fieldCount;
+        private int fieldsEnd;
+
+        private boolean hasTimestamp;
+        private long timestamp;
+
+        private void reset(CharSequence line) {
+            this.line = line;
+            this.tagCount = 0;
+            this.fieldCount = 0;
+            this.hasTimestamp = false;
+            this.timestamp = 0;
+        }
+
+        private void addTag(int keyStart, int keyEnd, int valueStart, int valueEnd) {
+            if ((tagCount + 1) * 4 > tags.length) {
+                tags = Arrays.copyOf(tags, tags.length * 2);
+            }
+
+            var offset = tagCount * 4;
+            tags[offset] = keyStart;
+            tags[offset + 1] = keyEnd;
+            tags[offset + 2] = valueStart;
+            tags[offset + 3] = valueEnd;
+            tagCount++;
+        }
+
+        private void addField(int keyStart, int keyEnd, FieldType type, int valueStart, int valueEnd, long longValue, double doubleValue) {
+            if (fieldCount == fieldTypes.length) {
+                fields = Arrays.copyOf(fields, fields.length * 2);
+                fieldTypes = Arrays.copyOf(fieldTypes, fieldTypes.length * 2);
+                longValues = Arrays.copyOf(longValues, longValues.length * 2);
+                doubleValues = Arrays.copyOf(doubleValues, doubleValues.length * 2);
+            }
+
+            var offset = fieldCount * 4;
+            fields[offset] = keyStart;
+            fields[offset + 1] = keyEnd;
+            fields[offset + 2] = valueStart;
+            fields[offset + 3] = valueEnd;
+            fieldTypes[fieldCount] = type;
+            longValues[fieldCount] = longValue;
+            doubleValues[fieldCount] = doubleValue;
+            fieldCount++;
+        }
+
+        String measurement() {
+            return unescape(line, measurementStart, measurementEnd);
+        }
+
+        /**
+         * @return the measurement and tag set as written in the line
+         */
+        String series() {
+            return line.subSequence(measurementStart, tagCount == 0 ? measurementEnd : tags[tagCount * 4 - 1]).toString();
+        }
+
+        /**
+         * @return the measurement and tag set with the tags sorted, identifying the series whatever the tag order
+         */
+        String seriesKey() {
+            if (tagCount == 0) {
+                return line.subSequence(measurementStart, measurementEnd).toString();
+            }
+
+            var tokens = new String[tagCount];
+            for (int i = 0; i < tagCount; i++) {
+                tokens[i] = line.subSequence(tags[i * 4], tags[i * 4 + 3]).toString();
+            }
+            Arrays.sort(tokens);
+
+            var key = new StringBuilder(line.length()).append(line, measurementStart, measurementEnd);
+            for (var token : tokens) {
+                key.append(',').append(token);
+            }
+            return key.toString();
+        }
+
+        int tagCount() {
+            return tagCount;
+        }
+
+        String tagKey(int index) {
+            return unescape(line, tags[index * 4], tags[index * 4 + 1]);
+        }
+
+        String tagValue(int index) {
+            return unescape(line, tags[index * 4 + 2], tags[index * 4 + 3]);
+        }
+
+        int fieldCount() {
+            return fieldCount;
+        }
+
+        String fieldKey(int index) {
+            return unescape(line, fields[index * 4], fields[index * 4 + 1]);
+        }
+
+        /**
+         * @return a 64 bits hash of the series key, the same whatever the tag order
+         */
+        long seriesHash64() {
+            long tagsHash = 0;
+            for (int i = 0; i < tagCount; i++) {
+                tagsHash += mix(hash64(line, tags[i * 4], tags[i * 4 + 3]));
+            }
+            return mix(31 * hash64(line, measurementStart, measurementEnd) + tagsHash);
+        }
+
+        /**
+         * @return a 64 bits hash of the tag value as written in the line
+         */
+        long tagValueHash64(int index) {
+            return hash64(line, tags[index * 4 + 2], tags[index * 4 + 3]);
+        }
+
+        /**
+         * @return the field key as written in the line
+         */
+        String rawFieldKey(int index) {
+            return line.subSequence(fields[index * 4], fields[index * 4 + 1]).toString();
+        }
+
+        /**
+         * @return the whole field, key and value, as written in the line
+         */
+        String rawField(int index) {
+            var end = index + 1 < fieldCount ? fields[(index + 1) * 4] - 1 : fieldsEnd;
+            return line.subSequence(fields[index * 4], end).toString();
+        }
+
+        FieldType fieldType(int index) {
+            return fieldTypes[index];
+        }
+
+        double doubleValue(int index) {
+            return doubleValues[index];
+        }
+
+        /**
+         * @return the value of an integer field, or the raw 64 bits of an unsigned one
+         */
+        long longValue(int index) {
+            return longValues[index];
+        }
+
+        boolean booleanValue(int index) {
+            return longValues[index] != 0;
+        }
+
+        String stringValue(int index) {
+            return unescape(line, fields[index * 4 + 2], fields[index * 4 + 3]);
+        }
+
+        /**
+         * @return the field value boxed as a Double, Long, BigInteger (for unsigned values above Long.MAX_VALUE),
+         * Boolean or String
+         */
+        Object fieldValue(int index) {
+            return switch (fieldTypes[index]) {
+                case FLOAT -> doubleValues[index];
+                case INTEGER -> longValues[index];
+                case UINTEGER -> longValues[index] >= 0 ? longValues[index] : new BigInteger(Long.toUnsignedString(longValues[index]));
+                case BOOLEAN -> longValues[index] != 0;
+                case STRING -> stringValue(index);
+            };
+        }
+
+        boolean hasTimestamp() {
+            return hasTimestamp;
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+    }
+}
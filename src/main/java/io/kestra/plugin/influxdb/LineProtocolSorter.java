@@ -0,0 +1,239 @@
+package io.kestra.plugin.influxdb;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Sort Line Protocol lines by series key then timestamp, optionally collapsing the points of a series that have the
+ * same timestamp, which InfluxDB would otherwise overwrite one after the other.
+ * <p>
+ * At most {@link #bufferSize} lines are kept in memory: larger inputs are sorted by runs spilled to temporary files
+ * that are then merged. The sort is stable, so the last point of a duplicate is always the last one of the input.
+ * Points without a timestamp are sorted after the others of their series and never collapsed, as the server assigns
+ * them its own time.
+ */
+final class LineProtocolSorter {
+    private static final Comparator<Entry> ORDER = Comparator
+        .comparing(Entry::key)
+        .thenComparing(Entry::hasTimestamp, Comparator.reverseOrder())
+        .thenComparingLong(Entry::timestamp);
+
+    private final Write.Deduplicate deduplicate;
+    private final int bufferSize;
+    private final Path directory;
+
+    private final LineProtocolParser.Point point = new LineProtocolParser.Point();
+
+    LineProtocolSorter(Write.Deduplicate deduplicate, int bufferSize, Path directory) {
+        this.deduplicate = deduplicate;
+        this.bufferSize = bufferSize;
+        this.directory = directory;
+    }
+
+    /**
+     * Sort the lines of the reader to the writer, blank and comment lines are dropped.
+     *
+     * @throws IllegalArgumentException if a line is not valid Line Protocol
+     */
+    Result sort(BufferedReader reader, Writer writer) throws IOException {
+        var runs = new ArrayList<Path>();
+        var buffer = new ArrayList<Entry>(Math.min(bufferSize, 10_000));
+        long lines = 0;
+        int lineNumber = 0;
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+
+                line = line.strip();
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+
+                try {
+                    buffer.add(this.entry(line, 0));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid Line Protocol at line " + lineNumber + ": " + e.getMessage(), e);
+                }
+                lines++;
+
+                if (buffer.size() >= bufferSize) {
+                    runs.add(this.spill(buffer));
+                    buffer.clear();
+                }
+            }
+
+            // List.sort is stable, equal points stay in the input order
+            buffer.sort(ORDER);
+
+            var output = new Output(writer);
+            if (runs.isEmpty()) {
+                for (var entry : buffer) {
+                    output.add(entry);
+                }
+            } else {
+                if (!buffer.isEmpty()) {
+                    runs.add(this.spill(buffer));
+                    buffer.clear();
+                }
+                this.merge(runs, output);
+            }
+            output.close();
+
+            return new Result(lines, output.duplicates, runs.size());
+        } finally {
+            for (var run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    private Path spill(List<Entry> buffer) throws IOException {
+        buffer.sort(ORDER);
+
+        var run = Files.createTempFile(directory, "sort", ".lp");
+        try (var writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+            for (var entry : buffer) {
+                writer.write(entry.line());
+                writer.write('\n');
+            }
+        }
+        return run;
+    }
+
+    private void merge(List<Path> runs, Output output) throws IOException {
+        var readers = new ArrayList<BufferedReader>(runs.size());
+        // on equal points, the earliest run comes first to keep the sort stable
+        var heads = new PriorityQueue<>(ORDER.thenComparingInt(Entry::run));
+
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                var reader = Files.newBufferedReader(runs.get(i), StandardCharsets.UTF_8);
+                readers.add(reader);
+                this.next(reader, i, heads);
+            }
+
+            Entry head;
+            while ((head = heads.poll()) != null) {
+                output.add(head);
+                this.next(readers.get(head.run()), head.run(), heads);
+            }
+        } finally {
+            for (var reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private void next(BufferedReader reader, int run, PriorityQueue<Entry> heads) throws IOException {
+        var line = reader.readLine();
+        if (line != null) {
+            heads.add(this.entry(line, run));
+        }
+    }
+
+    private Entry entry(String line, int run) {
+        LineProtocolParser.parse(line, point);
+        return new Entry(point.seriesKey(), point.hasTimestamp(), point.hasTimestamp() ? point.timestamp() : 0, line, run);
+    }
+
+    private record Entry(String key, boolean hasTimestamp, long timestamp, String line, int run) {
+        boolean sameTime(Entry other) {
+            return hasTimestamp && other.hasTimestamp && timestamp == other.timestamp && key.equals(other.key);
+        }
+    }
+
+    /**
+     * Write the sorted points, holding the last one back until the next point tells whether it is a duplicate.
+     */
+    private final class Output {
+        private final BufferedWriter writer;
+        private final LineProtocolParser.Point fieldsPoint = new LineProtocolParser.Point();
+
+        private Entry pending;
+        private Map<String, String> fields;
+        private String series;
+        private int duplicates;
+
+        private Output(Writer writer) {
+            this.writer = writer instanceof BufferedWriter buffered ? buffered : new BufferedWriter(writer);
+        }
+
+        void add(Entry entry) throws IOException {
+            if (pending != null && deduplicate != Write.Deduplicate.NONE && pending.sameTime(entry)) {
+                duplicates++;
+                if (deduplicate == Write.Deduplicate.MERGE_FIELDS) {
+                    this.mergeFields(entry);
+                }
+                pending = entry;
+                return;
+            }
+
+            this.emit();
+            pending = entry;
+        }
+
+        void close() throws IOException {
+            this.emit();
+            writer.flush();
+        }
+
+        private void emit() throws IOException {
+            if (pending == null) {
+                return;
+            }
+
+            if (fields != null) {
+                writer.write(series);
+                writer.write(' ');
+                writer.write(String.join(",", fields.values()));
+                writer.write(' ');
+                writer.write(Long.toString(pending.timestamp()));
+            } else {
+                writer.write(pending.line());
+            }
+            writer.write('\n');
+
+            pending = null;
+            fields = null;
+        }
+
+        private void mergeFields(Entry entry) {
+            if (fields == null) {
+                fields = new LinkedHashMap<>();
+                this.putFields(pending.line());
+            }
+
+            // keep the tags as written in the last point, the series key is the same whatever their order
+            series = this.putFields(entry.line());
+        }
+
+        private String putFields(String line) {
+            LineProtocolParser.parse(line, fieldsPoint);
+            for (int i = 0; i < fieldsPoint.fieldCount(); i++) {
+                fields.put(fieldsPoint.rawFieldKey(i), fieldsPoint.rawField(i));
+            }
+            return fieldsPoint.series();
+        }
+    }
+
+    /**
+     * @param lines the number of points read
+     * @param duplicates the number of points collapsed into another one
+     * @param runs the number of sorted runs spilled to disk, 0 if the input fit in memory
+     */
+    record Result(long lines, int duplicates, int runs) {
+    }
+}
@@ -0,0 +1,148 @@
+package io.kestra.plugin.influxdb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+/**
+ * Spread Line Protocol lines over several writers, each one sending its batches sequentially on its own virtual thread.
+ * <p>
+ * The lines are partitioned by series key so all the points of a series go through the same writer, in the order they
+ * were added. Each writer has a single request in flight and queues at most {@link #QUEUED_BATCHES} batches, so a slow
+ * writer slows down the reader instead of buffering the input in memory.
+ */
+final class PartitionedWriter implements AutoCloseable {
+    static final int QUEUED_BATCHES = 2;
+
+    private static final LineProtocolBatcher.Batch END = new LineProtocolBatcher.Batch("", 0, 0);
+
+    private final LineProtocolBatcher[] batchers;
+    private final IntSupplier maxPoints;
+    private final List<BlockingQueue<LineProtocolBatcher.Batch>> queues;
+    private final List<Future<?>> writers;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    /**
+     * @param maxPoints the maximum number of points of a batch, read for each line so it can change while writing
+     */
+    PartitionedWriter(int partitions, IntSupplier maxPoints, long maxBytes, Sender sender) {
+        this.batchers = new LineProtocolBatcher[partitions];
+        this.maxPoints = maxPoints;
+        this.queues = new ArrayList<>(partitions);
+        this.writers = new ArrayList<>(partitions);
+
+        for (int i = 0; i < partitions; i++) {
+            var queue = new ArrayBlockingQueue<LineProtocolBatcher.Batch>(QUEUED_BATCHES);
+
+            this.batchers[i] = new LineProtocolBatcher(maxPoints.getAsInt(), maxBytes, null);
+            this.queues.add(queue);
+            this.writers.add(executor.submit(() -> this.write(queue, sender)));
+        }
+    }
+
+    void add(String line) throws Exception {
+        var partition = Math.floorMod(LineProtocolParser.seriesHash(line), batchers.length);
+
+        var batcher = batchers[partition];
+        batcher.maxPoints(maxPoints.getAsInt());
+
+        var batch = batcher.add(line);
+        if (batch != null) {
+            this.submit(partition, batch);
+        }
+    }
+
+    /**
+     * Send the remaining batches and wait for all the writers.
+     *
+     * @throws Exception the first error raised by a writer
+     */
+    Result finish() throws Exception {
+        for (int i = 0; i < batchers.length; i++) {
+            var batch = batchers[i].flush();
+            if (batch != null) {
+                this.submit(i, batch);
+            }
+        }
+
+        for (var queue : queues) {
+            queue.put(END);
+        }
+
+        for (var writer : writers) {
+            try {
+                writer.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception exception ? exception : e;
+            }
+        }
+
+        this.throwIfFailed();
+
+        return new Result(count.get(), bytes.get(), batches.get());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void submit(int partition, LineProtocolBatcher.Batch batch) throws Exception {
+        // stop reading the input as soon as a writer failed
+        this.throwIfFailed();
+        queues.get(partition).put(batch);
+    }
+
+    private void throwIfFailed() throws Exception {
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private Void write(BlockingQueue<LineProtocolBatcher.Batch> queue, Sender sender) throws InterruptedException {
+        while (true) {
+            var batch = queue.take();
+            // compared by identity, the end marker is not an empty batch
+            if (batch == END) {
+                return null;
+            }
+
+            // keep draining the queue after a failure so the reader never blocks on it
+            if (failure.get() != null) {
+                continue;
+            }
+
+            try {
+                sender.send(batch);
+
+                count.addAndGet(batch.points());
+                bytes.addAndGet(batch.bytes());
+                batches.incrementAndGet();
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Sender {
+        void send(LineProtocolBatcher.Batch batch) throws Exception;
+    }
+
+    record Result(int count, long bytes, int batches) {
+    }
+}
@@ -0,0 +1,31 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.models.property.Property;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.Duration;
+
+@Builder
+@Getter
+@ToString
+@EqualsAndHashCode
+@Jacksonized
+public class QueryCache {
+    @Schema(
+        title = "Time a result stays in the cache"
+    )
+    @Builder.Default
+    private Property<Duration> ttl = Property.of(Duration.ofDays(1));
+
+    @Schema(
+        title = "Maximum size in bytes of all the results cached for the flow",
+        description = "The oldest results are evicted when a new one is cached, a result larger than this is never cached."
+    )
+    @Builder.Default
+    private Property<Long> maxSize = Property.of(100L * 1024 * 1024);
+}
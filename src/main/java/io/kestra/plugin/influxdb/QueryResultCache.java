@@ -0,0 +1,243 @@
+package io.kestra.plugin.influxdb;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.kestra.core.exceptions.ResourceExpiredException;
+import io.kestra.core.models.tasks.common.FetchType;
+import io.kestra.core.runners.RunContext;
+import io.kestra.core.serializers.FileSerde;
+import io.kestra.core.storages.kv.KVEntry;
+import io.kestra.core.storages.kv.KVMetadata;
+import io.kestra.core.storages.kv.KVStore;
+import io.kestra.core.storages.kv.KVValueAndMetadata;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Results of the queries over a closed time range, that can't change anymore, kept in the internal storage cache of
+ * the flow.
+ * <p>
+ * The result file is stored with the storage cache, which handles the time to live, and the row count and size of each
+ * entry are stored in the namespace KV store, expiring with it, so the oldest entries of the flow can be evicted when
+ * the cache grows over its maximum size.
+ */
+final class QueryResultCache {
+    private static final String CACHE_ID = "influxdb-query";
+    private static final String KEY_PREFIX = "influxdb-query-cache_";
+
+    private static final Pattern RANGE = Pattern.compile("\\brange\\s*\\(([^)]*)\\)");
+    private static final Pattern STOP = Pattern.compile("\\bstop\\s*:\\s*([^,\\s)]+)");
+
+    private final RunContext runContext;
+    private final KVStore kv;
+    private final String hash;
+    private final String keyPrefix;
+    private final Duration ttl;
+    private final long maxSize;
+
+    private QueryResultCache(RunContext runContext, String hash, Duration ttl, long maxSize) {
+        var flow = runContext.flowInfo();
+
+        this.runContext = runContext;
+        this.kv = runContext.namespaceKv(flow.namespace());
+        this.hash = hash;
+        this.keyPrefix = KEY_PREFIX + flow.id() + "_";
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param stop the end of the queried time range, {@code null} if unknown
+     * @param key everything the result depends on
+     * @return the cache of the result, {@code null} if the result may still change
+     */
+    static QueryResultCache of(RunContext runContext, QueryCache options, Instant stop, String... key) throws Exception {
+        if (stop == null || !stop.isBefore(Instant.now())) {
+            runContext.logger().debug("The query range is not closed, its result is not cached");
+            return null;
+        }
+
+        return new QueryResultCache(
+            runContext,
+            hash(key),
+            runContext.render(options.getTtl()).as(Duration.class).orElseThrow(),
+            runContext.render(options.getMaxSize()).as(Long.class).orElseThrow()
+        );
+    }
+
+    /**
+     * @return the latest stop of the {@code range()} calls of the query, {@code null} if one of them has no stop or a
+     * stop that is not an absolute date, such as {@code now()} or a duration
+     */
+    static Instant rangeStop(String query) {
+        Instant latest = null;
+
+        var ranges = RANGE.matcher(query);
+        while (ranges.find()) {
+            var stop = STOP.matcher(ranges.group(1));
+            if (!stop.find()) {
+                return null;
+            }
+
+            try {
+                var instant = OffsetDateTime.parse(stop.group(1)).toInstant();
+                latest = latest == null || instant.isAfter(latest) ? instant : latest;
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        return latest;
+    }
+
+    /**
+     * @return the cached result, with its file copied to the execution storage for STORE
+     */
+    Optional<FluxQuery.Output> get(FetchType fetchType, FluxQuery.Format format) throws IOException {
+        Map<?, ?> entry;
+        try {
+            var value = kv.getValue(this.key());
+            if (value.isEmpty() || !(value.get().value() instanceof Map<?, ?> map)) {
+                return Optional.empty();
+            }
+            entry = map;
+        } catch (ResourceExpiredException e) {
+            return Optional.empty();
+        }
+
+        var cached = runContext.storage().getCacheFile(CACHE_ID, hash, ttl);
+        if (cached.isEmpty()) {
+            return Optional.empty();
+        }
+
+        try (var stream = cached.get()) {
+            var output = FluxQuery.Output.builder()
+                .count(((Number) entry.get("count")).intValue())
+                .cached(true);
+
+            switch (fetchType) {
+                case STORE -> output.uri(runContext.storage().putFile(stream, "result" + format.extension()).toString());
+                case FETCH -> output.rows(readRows(stream));
+                case FETCH_ONE -> output.row(readRows(stream).stream().findFirst().orElse(null));
+                case NONE -> {
+                }
+            }
+
+            return Optional.of(output.build());
+        }
+    }
+
+    /**
+     * @param file the result file for STORE, {@code null} for the other fetch types
+     */
+    void put(FetchType fetchType, FluxQuery.Output output, File file) throws IOException {
+        if (fetchType == FetchType.NONE || (fetchType == FetchType.FETCH && output.getRows() == null)) {
+            // a FETCH result over the limits would be read back in memory from the cache
+            return;
+        }
+
+        File cached;
+        if (fetchType == FetchType.STORE) {
+            // the storage deletes the file it caches, the result file is still to be uploaded
+            cached = runContext.workingDir().createTempFile().toFile();
+            Files.delete(cached.toPath());
+            try {
+                Files.createLink(cached.toPath(), file.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(file.toPath(), cached.toPath());
+            }
+        } else {
+            cached = runContext.workingDir().createTempFile(".ion").toFile();
+            var rows = fetchType == FetchType.FETCH ? output.getRows() : output.getRow() == null ? List.<Map<String, Object>>of() : List.of(output.getRow());
+            try (var stream = new BufferedOutputStream(new FileOutputStream(cached), FileSerde.BUFFER_SIZE)) {
+                for (var row : rows) {
+                    FileSerde.write(stream, row);
+                }
+            }
+        }
+
+        var size = cached.length();
+        if (size > maxSize) {
+            runContext.logger().debug("The result is {} bytes, larger than the cache, it is not cached", size);
+            Files.delete(cached.toPath());
+            return;
+        }
+
+        runContext.storage().putCacheFile(cached, CACHE_ID, hash);
+        kv.put(this.key(), new KVValueAndMetadata(new KVMetadata(ttl), Map.of("count", output.getCount(), "size", size)));
+
+        this.evict();
+    }
+
+    /**
+     * Remove the oldest entries of the flow until they all fit in the maximum size.
+     */
+    private void evict() throws IOException {
+        var entries = new ArrayList<KVEntry>();
+        for (var entry : kv.list()) {
+            if (entry.key().startsWith(keyPrefix)) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparing(KVEntry::creationDate).reversed());
+
+        long total = 0;
+        for (var entry : entries) {
+            try {
+                var value = kv.getValue(entry.key());
+                if (value.isPresent() && value.get().value() instanceof Map<?, ?> map && total + ((Number) map.get("size")).longValue() <= maxSize) {
+                    total += ((Number) map.get("size")).longValue();
+                    continue;
+                }
+            } catch (ResourceExpiredException e) {
+                // expired entries are removed as well
+            }
+
+            kv.delete(entry.key());
+            runContext.storage().deleteCacheFile(CACHE_ID, entry.key().substring(keyPrefix.length()));
+        }
+    }
+
+    private String key() {
+        return keyPrefix + hash;
+    }
+
+    private static List<Map<String, Object>> readRows(InputStream stream) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), FileSerde.BUFFER_SIZE);
+        return FileSerde.readAll(reader, new TypeReference<Map<String, Object>>() {}).collectList().block();
+    }
+
+    private static String hash(String... key) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (var part : key) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                // separate the parts so they can't shift into each other
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
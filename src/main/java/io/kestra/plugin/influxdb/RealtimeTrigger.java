@@ -0,0 +1,405 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.client.QueryApi;
+import io.kestra.core.exceptions.IllegalVariableEvaluationException;
+import io.kestra.core.models.annotations.Plugin;
+import io.kestra.core.models.conditions.ConditionContext;
+import io.kestra.core.models.executions.Execution;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.models.triggers.*;
+import io.kestra.core.runners.RunContext;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+@SuperBuilder
+@ToString
+@EqualsAndHashCode
+@Getter
+@NoArgsConstructor
+@Plugin(
+    examples = {
+        @io.kestra.core.models.annotations.Example(
+            title = "Start an execution for each new cpu measurement as soon as it is written",
+            full = true,
+            code = """
+                id: influxdb-realtime-trigger
+                namespace: io.kestra.influxdb
+
+                tasks:
+                  - id: log
+                    type: io.kestra.plugin.core.log.Log
+                    message: "{{ trigger.rows[0] }}"
+
+                triggers:
+                  - id: watch
+                    type: io.kestra.plugin.influxdb.RealtimeTrigger
+                    url: http://localhost:8086
+                    token: my-token
+                    org: my-org
+                    bucket: my-bucket
+                    query: |
+                      from(bucket: "my-bucket")
+                        |> range(start: {{ watermark }})
+                        |> filter(fn: (r) => r["_measurement"] == "cpu")
+                """
+        ),
+        @io.kestra.core.models.annotations.Example(
+            title = "Start an execution for each micro-batch of up to 1000 new rows",
+            full = true,
+            code = """
+                id: influxdb-realtime-batches
+                namespace: io.kestra.influxdb
+
+                tasks:
+                  - id: log
+                    type: io.kestra.plugin.core.log.Log
+                    message: "{{ trigger.count }} new rows"
+
+                triggers:
+                  - id: watch
+                    type: io.kestra.plugin.influxdb.RealtimeTrigger
+                    url: http://localhost:8086
+                    token: my-token
+                    org: my-org
+                    bucket: my-bucket
+                    maxRecords: 1000
+                    pollInterval: PT0.2S
+                    query: |
+                      from(bucket: "my-bucket")
+                        |> range(start: {{ watermark }})
+                        |> filter(fn: (r) => r["_measurement"] == "cpu")
+                """
+        )
+    }
+)
+@Schema(
+    title = "Start an execution as soon as new data is written to InfluxDB",
+    description = "Keep a client open and run the Flux query again as soon as the previous one ended, or after " +
+        "`pollInterval` when it returned nothing, each query being restricted to the data newer than the last `_time` " +
+        "seen, available in the query as `{{ watermark }}`. The rows are streamed as they are received and an " +
+        "execution is started for each row, or for each micro-batch of `maxRecords` rows. The query stops reading " +
+        "from the server while executions can't be started fast enough.\n\n" +
+        "The watermark is kept in the state store once all the rows of a query have been emitted, so after a restart " +
+        "the rows of the query that was running may be emitted again. The query must keep the `_time` column."
+)
+public class RealtimeTrigger extends AbstractTrigger implements RealtimeTriggerInterface, TriggerOutput<RealtimeTrigger.Output>, InfluxDBConnectionInterface {
+    private static final String STATE_NAME = "influxdb-realtime-trigger";
+    private static final Duration MAX_ERROR_DELAY = Duration.ofMinutes(1);
+
+    @Builder.Default
+    private String url = "http://localhost:8086";
+
+    @Builder.Default
+    private String token = "my-token";
+
+    @Builder.Default
+    private String org = "my-org";
+
+    @Builder.Default
+    private String bucket = "my-bucket";
+
+    private ClientOptions options;
+
+    @Schema(
+        title = "Flux query",
+        description = "The Flux query to execute, it must only return the data after `{{ watermark }}`, " +
+            "typically with `range(start: {{ watermark }})`"
+    )
+    private Property<String> query;
+
+    @Schema(
+        title = "Maximum number of rows of an execution",
+        description = "1 starts an execution per row, a higher value starts an execution per micro-batch of rows, " +
+            "a partial micro-batch being emitted at the end of each query."
+    )
+    @Builder.Default
+    private Property<Integer> maxRecords = Property.of(1);
+
+    @Schema(
+        title = "Time to wait before querying again when the last query returned no new row"
+    )
+    @Builder.Default
+    private Property<Duration> pollInterval = Property.of(Duration.ofMillis(500));
+
+    @Schema(
+        title = "Watermark used for the first query",
+        description = "An RFC3339 date, the first query starts from the time the trigger started if not set"
+    )
+    private Property<String> initialWatermark;
+
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean isActive = new AtomicBoolean(true);
+
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    private final CountDownLatch waitForTermination = new CountDownLatch(1);
+
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<Thread> poller = new AtomicReference<>();
+
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<FluxQuery.Cancellation> running = new AtomicReference<>();
+
+    // notified on a request of the downstream, the disposal of the sink and stop(), see emit()
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    private final Object demand = new Object();
+
+    @Override
+    public Publisher<Execution> evaluate(ConditionContext conditionContext, TriggerContext context) throws Exception {
+        var runContext = conditionContext.getRunContext();
+
+        var maxRecordsValue = runContext.render(maxRecords).as(Integer.class).orElseThrow();
+        if (maxRecordsValue < 1) {
+            throw new IllegalArgumentException("'maxRecords' must be at least 1, got " + maxRecordsValue);
+        }
+        var pollIntervalValue = runContext.render(pollInterval).as(Duration.class).orElseThrow();
+        var clientKey = this.clientKey(runContext);
+
+        return Flux
+            .<Output>create(
+                sink -> {
+                    sink.onRequest(requested -> this.notifyDemand());
+                    sink.onDispose(this::notifyDemand);
+
+                    poller.set(Thread.ofVirtual()
+                        .name("influxdb-realtime-" + this.id)
+                        .start(() -> this.poll(runContext, clientKey, maxRecordsValue, pollIntervalValue, sink)));
+                },
+                FluxSink.OverflowStrategy.BUFFER
+            )
+            .map(output -> TriggerService.generateRealtimeExecution(this, conditionContext, context, output));
+    }
+
+    private void poll(
+        RunContext runContext,
+        InfluxDBClientPool.Key clientKey,
+        int maxRecords,
+        Duration pollInterval,
+        FluxSink<Output> sink
+    ) {
+        var watermark = new TriggerWatermark(runContext, STATE_NAME, this.id);
+        var started = Instant.now();
+        var errors = 0;
+
+        // a single client for the whole life of the trigger
+        try (var lease = InfluxDBClientPool.INSTANCE.acquire(clientKey)) {
+            var queryApi = lease.client().getQueryApi();
+
+            while (this.isRunning(sink)) {
+                try {
+                    var from = watermark.load(() -> this.initialWatermark(runContext, started));
+                    var count = this.query(runContext, queryApi, from, maxRecords, sink, watermark);
+                    errors = 0;
+
+                    if (count == 0) {
+                        Thread.sleep(pollInterval.toMillis());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    if (!this.isRunning(sink)) {
+                        break;
+                    }
+
+                    // keep the trigger running through server restarts, backing off while the errors last
+                    var delay = pollInterval.multipliedBy(1L << Math.min(++errors, 10));
+                    delay = delay.compareTo(MAX_ERROR_DELAY) > 0 ? MAX_ERROR_DELAY : delay;
+                    runContext.logger().warn("Query failed, retrying in {}: {}", delay, e.getMessage(), e);
+                    Thread.sleep(delay.toMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            sink.error(e);
+            return;
+        } finally {
+            waitForTermination.countDown();
+        }
+
+        sink.complete();
+    }
+
+    /**
+     * Run the query from the watermark, emitting the rows as they are received, then save the next watermark.
+     *
+     * @return the number of rows emitted
+     */
+    private int query(
+        RunContext runContext,
+        QueryApi queryApi,
+        Instant from,
+        int maxRecords,
+        FluxSink<Output> sink,
+        TriggerWatermark watermark
+    ) throws Exception {
+        var renderedQuery = FluxQuery.render(runContext, this.query, Map.of("watermark", from.toString()));
+
+        var converter = new FluxRecordConverter(null, true);
+        var last = new AtomicReference<Instant>();
+        var batch = new AtomicReference<List<Map<String, Object>>>(new ArrayList<>(maxRecords));
+
+        // stop() cancels the running query right away
+        var cancellation = new FluxQuery.Cancellation();
+        running.set(cancellation);
+        if (!isActive.get()) {
+            cancellation.cancel();
+        }
+
+        int count;
+        try {
+            count = FluxQuery.stream(queryApi, renderedQuery, cancellation, (cancellable, record) -> {
+                if (!this.isRunning(sink)) {
+                    cancellable.cancel();
+                    return;
+                }
+
+                TriggerWatermark.advance(last, record.getTime());
+                batch.get().add(converter.convert(record));
+
+                if (batch.get().size() >= maxRecords && !this.emit(sink, batch.getAndSet(new ArrayList<>(maxRecords)))) {
+                    cancellable.cancel();
+                }
+            });
+        } finally {
+            running.set(null);
+        }
+
+        if (!batch.get().isEmpty() && !this.emit(sink, batch.get())) {
+            throw new CancellationException("The trigger has been stopped");
+        }
+
+        if (!this.isRunning(sink)) {
+            // rows may not all have been emitted, the next run queries them again
+            throw new CancellationException("The trigger has been stopped");
+        }
+
+        if (count > 0) {
+            var next = TriggerWatermark.next(from, last.get());
+            watermark.save(next);
+            runContext.logger().debug("Emitted {} new rows after {}, next watermark is {}", count, from, next);
+        }
+
+        return count;
+    }
+
+    /**
+     * Emit the rows once the executions already emitted have been consumed, so a slow consumer holds the query
+     * instead of the rows piling up in memory. Called from the record callback, so on a thread of the HTTP client and
+     * not on the poller, the wait ends on a request of the downstream, the disposal of the sink or {@link #stop()}.
+     *
+     * @return {@code false} if the trigger has been stopped before the rows could be emitted
+     */
+    private boolean emit(FluxSink<Output> sink, List<Map<String, Object>> rows) {
+        try {
+            synchronized (demand) {
+                while (sink.requestedFromDownstream() == 0) {
+                    if (!this.isRunning(sink)) {
+                        return false;
+                    }
+                    demand.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        sink.next(Output.builder()
+            .count(rows.size())
+            .rows(rows)
+            .build()
+        );
+        return true;
+    }
+
+    private void notifyDemand() {
+        synchronized (demand) {
+            demand.notifyAll();
+        }
+    }
+
+    private boolean isRunning(FluxSink<Output> sink) {
+        return isActive.get() && !sink.isCancelled() && !Thread.currentThread().isInterrupted();
+    }
+
+    private Instant initialWatermark(RunContext runContext, Instant started) {
+        try {
+            return runContext.render(initialWatermark).as(String.class)
+                .map(Instant::parse)
+                .orElse(started);
+        } catch (IllegalVariableEvaluationException e) {
+            throw new IllegalArgumentException("Invalid initial watermark: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void kill() {
+        this.stop(true);
+    }
+
+    @Override
+    public void stop() {
+        this.stop(false);
+    }
+
+    private void stop(boolean wait) {
+        if (!isActive.compareAndSet(true, false)) {
+            return;
+        }
+
+        // don't wait for the next record to notice it, the query may be waiting for the server
+        var query = running.get();
+        if (query != null) {
+            query.cancel();
+        }
+        // wake up the poller waiting for the server or for the next query
+        var thread = poller.get();
+        if (thread != null) {
+            thread.interrupt();
+        }
+        // and the record callback waiting for demand, which runs on a thread of the HTTP client
+        this.notifyDemand();
+
+        if (wait) {
+            try {
+                this.waitForTermination.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Builder
+    @Getter
+    public static class Output implements io.kestra.core.models.tasks.Output {
+        @Schema(
+            title = "Number of rows"
+        )
+        private int count;
+
+        @Schema(
+            title = "The rows, a single one unless `maxRecords` is higher than 1"
+        )
+        private List<Map<String, Object>> rows;
+    }
+}
@@ -0,0 +1,89 @@
+package io.kestra.plugin.influxdb;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import io.kestra.core.serializers.FileSerde;
+import io.kestra.core.serializers.JacksonMapper;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+/**
+ * Read the rows of an ION file as Line Protocol text, so they go through the same validation, sort and batching as a
+ * Line Protocol file.
+ * <p>
+ * Rows are converted as the text is read, into a single buffer reused until the end of the file.
+ */
+final class RecordLineReader extends Reader {
+    private final MappingIterator<Object> rows;
+    private final LineProtocolConverter converter;
+    private final Logger logger;
+
+    private final StringBuilder buffer = new StringBuilder(FileSerde.BUFFER_SIZE * 2);
+    private int position;
+
+    private long count;
+    private long skipped;
+    private boolean ended;
+
+    RecordLineReader(Reader ion, LineProtocolConverter converter, Logger logger) throws IOException {
+        this.rows = JacksonMapper.ofIon().readerFor(Object.class).readValues(ion);
+        this.converter = converter;
+        this.logger = logger;
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (position >= buffer.length() && !this.fill()) {
+            return -1;
+        }
+
+        var read = Math.min(length, buffer.length() - position);
+        buffer.getChars(position, position + read, chars, offset);
+        position += read;
+        return read;
+    }
+
+    private boolean fill() throws IOException {
+        if (ended) {
+            return false;
+        }
+
+        buffer.setLength(0);
+        position = 0;
+
+        while (buffer.length() < FileSerde.BUFFER_SIZE && rows.hasNextValue()) {
+            count++;
+            if (!(rows.nextValue() instanceof Map<?, ?> row)) {
+                throw new IllegalArgumentException("Row " + count + " of the ION file is not a record");
+            }
+
+            try {
+                if (!converter.convert(row, buffer)) {
+                    skipped++;
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid row " + count + " of the ION file: " + e.getMessage(), e);
+            }
+        }
+
+        if (buffer.isEmpty()) {
+            ended = true;
+            if (skipped > 0) {
+                logger.warn("Skipped {} rows out of {} without any field value", skipped, count);
+            }
+        }
+
+        return !ended;
+    }
+
+    @Override
+    public void close() throws IOException {
+        rows.close();
+    }
+}
@@ -0,0 +1,63 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.client.domain.WritePrecision;
+import io.kestra.core.exceptions.IllegalVariableEvaluationException;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.runners.RunContext;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+@Builder
+@Getter
+@ToString
+@EqualsAndHashCode
+@Jacksonized
+public class RecordMapping {
+    @Schema(
+        title = "Measurement name"
+    )
+    private Property<String> measurement;
+
+    @Schema(
+        title = "Columns written as tags",
+        description = "Null and empty values are left out of the point."
+    )
+    private Property<List<String>> tags;
+
+    @Schema(
+        title = "Columns written as fields",
+        description = "All the columns that are neither a tag nor the timestamp if not set. Integers are written as " +
+            "integer fields, decimals as float fields, booleans as boolean fields and anything else as a string field. " +
+            "Null values are left out of the point, and a row without any field is skipped."
+    )
+    private Property<List<String>> fields;
+
+    @Schema(
+        title = "Column of the point timestamp",
+        description = "The column can hold a date, a date time, an ISO-8601 string or a number of `precision` units " +
+            "since the epoch. If not set or null, the server assigns its own time to the point."
+    )
+    private Property<String> timestamp;
+
+    @Schema(
+        title = "Unit of the numeric timestamps"
+    )
+    @Builder.Default
+    private Property<WritePrecision> precision = Property.of(WritePrecision.NS);
+
+    LineProtocolConverter compile(RunContext runContext) throws IllegalVariableEvaluationException {
+        return new LineProtocolConverter(
+            runContext.render(measurement).as(String.class).orElseThrow(() -> new IllegalArgumentException("The mapping 'measurement' is required")),
+            runContext.render(tags).asList(String.class),
+            fields == null ? null : runContext.render(fields).asList(String.class),
+            runContext.render(timestamp).as(String.class).orElse(null),
+            runContext.render(precision).as(WritePrecision.class).orElseThrow()
+        );
+    }
+}
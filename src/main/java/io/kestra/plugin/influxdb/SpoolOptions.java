@@ -0,0 +1,39 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.models.property.Property;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+@Builder
+@Getter
+@ToString
+@EqualsAndHashCode
+@Jacksonized
+public class SpoolOptions {
+    @Schema(
+        title = "Directory of the spool on the worker",
+        description = "Each URL, organization and bucket gets its own sub directory. It must be on a local disk that " +
+            "survives the task runs, so the points left by a run or a worker restart are written later. " +
+            "A `kestra-influxdb-spool` directory in the temporary directory of the worker if not set."
+    )
+    private Property<String> directory;
+
+    @Schema(
+        title = "Maximum size in bytes of the points waiting to be written",
+        description = "A write that would go over it fails and nothing of it is kept in the spool."
+    )
+    @Builder.Default
+    private Property<Long> maxBytes = Property.of(1024L * 1024 * 1024);
+
+    @Schema(
+        title = "Size in bytes of a segment file",
+        description = "The spool is a sequence of append-only segment files, a segment is deleted once all its points " +
+            "are written."
+    )
+    @Builder.Default
+    private Property<Long> segmentBytes = Property.of(64L * 1024 * 1024);
+}
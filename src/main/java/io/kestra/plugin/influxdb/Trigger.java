@@ -5,54 +5,220 @@ import io.kestra.core.models.annotations.Plugin;
 import io.kestra.core.models.conditions.ConditionContext;
 import io.kestra.core.models.executions.Execution;
 import io.kestra.core.models.property.Property;
+import io.kestra.core.models.tasks.common.FetchType;
 import io.kestra.core.models.triggers.*;
 import io.kestra.core.runners.RunContext;
+import io.kestra.core.serializers.FileSerde;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 @SuperBuilder
 @ToString
 @EqualsAndHashCode
 @Getter
 @NoArgsConstructor
-@Plugin
+@Plugin(
+    examples = {
+        @io.kestra.core.models.annotations.Example(
+            title = "Start an execution for each batch of new cpu measurements",
+            full = true,
+            code = """
+                id: influxdb-trigger
+                namespace: io.kestra.influxdb
+
+                tasks:
+                  - id: each
+                    type: io.kestra.plugin.core.flow.ForEach
+                    values: "{{ trigger.rows }}"
+                    tasks:
+                      - id: log
+                        type: io.kestra.plugin.core.log.Log
+                        message: "{{ taskrun.value }}"
+
+                triggers:
+                  - id: watch
+                    type: io.kestra.plugin.influxdb.Trigger
+                    url: http://localhost:8086
+                    token: my-token
+                    org: my-org
+                    bucket: my-bucket
+                    interval: PT1M
+                    query: |
+                      from(bucket: "my-bucket")
+                        |> range(start: {{ watermark }})
+                        |> filter(fn: (r) => r["_measurement"] == "cpu")
+                """
+        )
+    }
+)
 @Schema(
-    title = "Trigger an execution randomly",
-    description ="Trigger an execution randomly"
+    title = "Trigger an execution when new data is available in InfluxDB",
+    description = "Poll InfluxDB every `interval` with a Flux query restricted to the data newer than the last `_time` " +
+        "seen, available in the query as `{{ watermark }}`, and start an execution only when new rows are returned. " +
+        "The watermark is kept in the state store so each poll only scans the delta. " +
+        "The query must keep the `_time` column, rows with a `_time` older than the watermark are never seen."
 )
-public class Trigger extends AbstractTrigger implements PollingTriggerInterface, TriggerOutput<Trigger.Output> {
+public class Trigger extends AbstractTrigger implements PollingTriggerInterface, TriggerOutput<Trigger.Output>, InfluxDBConnectionInterface {
+    private static final String STATE_NAME = "influxdb-trigger";
+
     @Builder.Default
     private final Duration interval = Duration.ofSeconds(60);
 
-    protected Property<Double> min = Property.of(0.5);
+    @Builder.Default
+    private String url = "http://localhost:8086";
+
+    @Builder.Default
+    private String token = "my-token";
+
+    @Builder.Default
+    private String org = "my-org";
+
+    @Builder.Default
+    private String bucket = "my-bucket";
+
+    private ClientOptions options;
+
+    @Schema(
+        title = "Flux query",
+        description = "The Flux query to execute, it must only return the data after `{{ watermark }}`, " +
+            "typically with `range(start: {{ watermark }})`"
+    )
+    private Property<String> query;
+
+    @Schema(
+        title = "The way you want to store the data.",
+        description = "FETCH output all the rows, "
+            + "STORE store all rows in a file."
+    )
+    @Builder.Default
+    private Property<FetchType> fetchType = Property.of(FetchType.FETCH);
+
+    @Schema(
+        title = "Watermark used for the first poll",
+        description = "An RFC3339 date, the first poll starts one `interval` ago if not set"
+    )
+    private Property<String> initialWatermark;
 
     @Override
-    public Optional<Execution> evaluate(ConditionContext conditionContext, TriggerContext context) throws IllegalVariableEvaluationException {
+    public Optional<Execution> evaluate(ConditionContext conditionContext, TriggerContext context) throws Exception {
         RunContext runContext = conditionContext.getRunContext();
 
-        double random = Math.random();
-        if (random < runContext.render(this.min).as(Double.class).orElseThrow()) {
+        var fetchTypeValue = runContext.render(fetchType).as(FetchType.class).orElseThrow();
+        if (fetchTypeValue != FetchType.FETCH && fetchTypeValue != FetchType.STORE) {
+            throw new IllegalArgumentException("Only the FETCH and STORE fetch types are supported, got " + fetchTypeValue);
+        }
+
+        var state = new TriggerWatermark(runContext, STATE_NAME, this.id);
+        var watermark = state.load(() -> this.initialWatermark(runContext));
+        var renderedQuery = FluxQuery.render(runContext, this.query, Map.of("watermark", watermark.toString()));
+
+        var converter = new FluxRecordConverter(null, fetchTypeValue == FetchType.FETCH);
+        var last = new AtomicReference<Instant>();
+        var output = Output.builder();
+        int count;
+
+        try (var lease = InfluxDBClientPool.INSTANCE.acquire(this.clientKey(runContext))) {
+            var queryApi = lease.client().getQueryApi();
+
+            if (fetchTypeValue == FetchType.FETCH) {
+                var rows = new ArrayList<Map<String, Object>>();
+                count = FluxQuery.stream(queryApi, renderedQuery, (cancellable, record) -> {
+                    TriggerWatermark.advance(last, record.getTime());
+                    rows.add(converter.convert(record));
+                });
+                output.rows(rows);
+            } else {
+                var tempFile = runContext.workingDir().createTempFile(".ion").toFile();
+                try {
+                    try (var stream = new BufferedOutputStream(new FileOutputStream(tempFile), FileSerde.BUFFER_SIZE)) {
+                        count = FluxQuery.stream(queryApi, renderedQuery, (cancellable, record) -> {
+                            TriggerWatermark.advance(last, record.getTime());
+                            try {
+                                FileSerde.write(stream, converter.convert(record));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    }
+
+                    if (count > 0) {
+                        output.uri(runContext.storage().putFile(tempFile).toString());
+                    }
+                } finally {
+                    // the storage moved the file if uploaded, the empty file of a poll without new data is left
+                    Files.deleteIfExists(tempFile.toPath());
+                }
+            }
+        }
+
+        if (count == 0) {
+            runContext.logger().debug("No new data after {}", watermark);
             return Optional.empty();
         }
 
-        runContext.logger().info("Will create an execution");
+        var next = TriggerWatermark.next(watermark, last.get());
+        state.save(next);
+
+        runContext.logger().info("Found {} new rows after {}, next watermark is {}", count, watermark, next);
+
         Execution execution = TriggerService.generateExecution(
             this,
             conditionContext,
             context,
-            Output.builder().random(random).build()
+            output
+                .count(count)
+                .watermark(next.toString())
+                .build()
         );
 
         return Optional.of(execution);
     }
 
+    private Instant initialWatermark(RunContext runContext) {
+        try {
+            return runContext.render(initialWatermark).as(String.class)
+                .map(Instant::parse)
+                .orElseGet(() -> Instant.now().minus(interval));
+        } catch (IllegalVariableEvaluationException e) {
+            throw new IllegalArgumentException("Invalid initial watermark: " + e.getMessage(), e);
+        }
+    }
+
     @Builder
     @Getter
     public static class Output implements io.kestra.core.models.tasks.Output {
-        private Double random;
+        @Schema(
+            title = "Number of new rows"
+        )
+        private int count;
+
+        @Schema(
+            title = "The new rows, when the fetch type is FETCH"
+        )
+        private List<Map<String, Object>> rows;
+
+        @Schema(
+            title = "URI of the file with the new rows, when the fetch type is STORE"
+        )
+        private String uri;
+
+        @Schema(
+            title = "The watermark the next poll starts from"
+        )
+        private String watermark;
     }
 }
@@ -0,0 +1,60 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.exceptions.ResourceExpiredException;
+import io.kestra.core.runners.RunContext;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The {@code _time} a trigger query starts from, kept in the state store so each query only scans the new data, even
+ * after a restart. It is only read from the state store on the first load, the saved value being kept in memory.
+ */
+final class TriggerWatermark {
+    private final RunContext runContext;
+    private final String stateName;
+    private final String triggerId;
+    private Instant current;
+
+    TriggerWatermark(RunContext runContext, String stateName, String triggerId) {
+        this.runContext = runContext;
+        this.stateName = stateName;
+        this.triggerId = triggerId;
+    }
+
+    /**
+     * @param initial the watermark to start from when none has been saved yet
+     */
+    Instant load(Supplier<Instant> initial) throws IOException {
+        if (current == null) {
+            try (var state = runContext.stateStore().getState(stateName, triggerId, null)) {
+                current = Instant.parse(new String(state.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (FileNotFoundException | ResourceExpiredException e) {
+                current = initial.get();
+            }
+        }
+        return current;
+    }
+
+    void save(Instant watermark) throws IOException {
+        runContext.stateStore().putState(stateName, triggerId, null, watermark.toString().getBytes(StandardCharsets.UTF_8));
+        current = watermark;
+    }
+
+    /**
+     * @return the watermark following the last row seen, the range start being inclusive
+     */
+    static Instant next(Instant watermark, Instant last) {
+        return last == null ? watermark : last.plusNanos(1);
+    }
+
+    static void advance(AtomicReference<Instant> last, Instant time) {
+        if (time != null && (last.get() == null || time.isAfter(last.get()))) {
+            last.set(time);
+        }
+    }
+}
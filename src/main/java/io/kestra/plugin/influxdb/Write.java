@@ -1,21 +1,49 @@
 package io.kestra.plugin.influxdb;
 
 import com.influxdb.client.InfluxDBClient;
-import com.influxdb.client.InfluxDBClientFactory;
+import com.influxdb.client.WriteOptions;
 import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.events.BackpressureEvent;
+import com.influxdb.client.write.events.WriteErrorEvent;
+import com.influxdb.client.write.events.WriteRetriableErrorEvent;
+import com.influxdb.client.write.events.WriteSuccessEvent;
+import com.influxdb.exceptions.InfluxException;
+import io.kestra.core.exceptions.IllegalVariableEvaluationException;
 import io.kestra.core.models.annotations.Plugin;
+import io.kestra.core.models.executions.metrics.Counter;
+import io.kestra.core.models.executions.metrics.Timer;
 import io.kestra.core.models.property.Property;
 import io.kestra.core.models.tasks.RunnableTask;
-import io.kestra.core.models.tasks.Task;
 import io.kestra.core.runners.RunContext;
+import io.kestra.core.serializers.FileSerde;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
 
 @SuperBuilder
 @ToString
@@ -24,7 +52,7 @@ import java.util.Map;
 @NoArgsConstructor
 @Schema(
     title = "Write a measure",
-    description = "Write a measure from a wire format multiline string"
+    description = "Write a measure from a wire format multiline string or from a Line Protocol file in internal storage"
 )
 @Plugin(
     examples = {
@@ -48,80 +76,774 @@ import java.util.Map;
                         format: "{{outputs['write-metrics'].count}}"
 
                 """
+        ),
+        @io.kestra.core.models.annotations.Example(
+            title = "Write measures from a (possibly gzipped) Line Protocol file in compressed batches of 10000 points",
+            code = """
+                    id: write_file
+                    namespace: io.kestra.influxdb
+                    inputs:
+                      - id: file
+                        type: FILE
+                    tasks:
+                      - id: write-metrics
+                        type: io.kestra.plugin.influxdb.Write
+                        url: http://localhost:8086
+                        token: my-token
+                        org: my-org
+                        bucket: my-bucket
+                        from: "{{ inputs.file }}"
+                        batchSize: 10000
+                        options:
+                          gzip: true
+                """
+        ),
+        @io.kestra.core.models.annotations.Example(
+            title = "Write the rows of a query result, each row being mapped to a point",
+            code = """
+                    id: write_rows
+                    namespace: io.kestra.influxdb
+                    tasks:
+                      - id: query
+                        type: io.kestra.plugin.jdbc.postgresql.Query
+                        url: jdbc:postgresql://localhost:5432/metrics
+                        sql: SELECT host, region, usage, idle, created_at FROM cpu
+                        fetchType: STORE
+                      - id: write-metrics
+                        type: io.kestra.plugin.influxdb.Write
+                        url: http://localhost:8086
+                        token: my-token
+                        org: my-org
+                        bucket: my-bucket
+                        from: "{{ outputs.query.uri }}"
+                        mapping:
+                          measurement: cpu
+                          tags:
+                            - host
+                            - region
+                          fields:
+                            - usage
+                            - idle
+                          timestamp: created_at
+                """
+        ),
+        @io.kestra.core.models.annotations.Example(
+            title = "Spool the measures on the worker disk so the task succeeds while InfluxDB is unavailable",
+            code = """
+                    id: write_spooled
+                    namespace: io.kestra.influxdb
+                    tasks:
+                      - id: write-metrics
+                        type: io.kestra.plugin.influxdb.Write
+                        url: http://localhost:8086
+                        token: my-token
+                        org: my-org
+                        bucket: my-bucket
+                        wireInputMultilineData: |
+                          cpu,host=server01,region=us_west value=0.64 1422568543702900257
+                        spool:
+                          directory: /var/lib/kestra/influxdb-spool
+                          maxBytes: 10737418240
+                """
         )
     }
 )
-public class Write extends Task implements RunnableTask<Write.Output> {
+public class Write extends AbstractInfluxDBTask implements RunnableTask<Write.Output> {
+
+    /**
+     * Examples:
+     * cpu,host=server01,region=us_west value=0.64 1422568543702900257
+     * cpu,host=server01,region=us_west value=0.66 1422568543702900258
+     * cpu,host=server02,region=eu_central value=0.88 1422568543702900259
+     * mem,host=server01,region=us_west free=1024,total=4096 1422568543702900260
+     * mem,host=server02,region=eu_central free=2048,total=8192 1422568543702900261
+     * http_requests,method=GET,status=200 count=1 1422568543702900262
+     * http_requests,method=POST,status=400 count=3 1422568543702900263
+     */
+    @Schema(
+        title = "Wire format data",
+        description = "The data to write in InfluxDB Line Protocol format"
+    )
+    private Property<String> wireInputMultilineData;
 
     @Schema(
-        title = "InfluxDB URL",
-        description = "The URL of the InfluxDB server"
+        title = "Source file URI",
+        description = "The `kestra://` URI of a file in InfluxDB Line Protocol format, or an ION file with `mapping`, " +
+            "the file can be gzipped. " +
+            "The file is read and sent in batches so it is never fully loaded in memory. " +
+            "Either `wireInputMultilineData` or `from` must be set."
+    )
+    private Property<String> from;
+
+    @Schema(
+        title = "Write the rows of an ION file",
+        description = "When set, `from` is an ION file of rows, such as the output of a database query, and each row " +
+            "is converted to a point with this mapping instead of being read as Line Protocol."
+    )
+    private RecordMapping mapping;
+
+    @Schema(
+        title = "Validate the whole input before writing",
+        description = "Parse every line first and fail with the line numbers of the invalid ones, " +
+            "so nothing is written if the input contains an invalid line. This reads the input twice."
     )
     @Builder.Default
-    private String url = "http://localhost:8086";
+    private Property<Boolean> validate = Property.of(false);
 
     @Schema(
-        title = "InfluxDB token",
-        description = "The authentication token for InfluxDB"
+        title = "Estimate the cardinality of the input and stop the write when it is too high",
+        description = "The number of distinct series and of distinct values of each tag key are estimated while " +
+            "reading the input, in a fixed amount of memory, and reported in the outputs and the metrics. " +
+            "When a limit is exceeded the write fails, or only logs a warning, within a few batches. " +
+            "With `validate` the estimate is done while validating, so nothing is written if a limit is exceeded."
+    )
+    private CardinalityLimits cardinality;
+
+    @Schema(
+        title = "Write mode",
+        description = "BLOCKING sends each batch synchronously and fails on the first error, " +
+            "BATCHING buffers the points in the client and sends them asynchronously with retries, " +
+            "write errors and backpressure events are then reported in the outputs."
     )
     @Builder.Default
-    private String token = "my-token";
+    private Property<Mode> mode = Property.of(Mode.BLOCKING);
 
     @Schema(
-        title = "InfluxDB organization",
-        description = "The organization name in InfluxDB"
+        title = "Resume an interrupted write where it stopped",
+        description = "Only used with `from`, the BLOCKING mode and a `concurrency` of 1. The position of the last " +
+            "acknowledged batch is kept in the state store, so when the task is retried or the execution restarted " +
+            "the lines already written are skipped. The checkpoint is deleted once the whole file is written.\n\n" +
+            "Each save is a round-trip to the state store, so it is saved at most once per `checkpointInterval`: " +
+            "the batches written since the last save are sent again on resume, which is harmless as InfluxDB " +
+            "overwrites a point with the same series and timestamp."
     )
     @Builder.Default
-    private String org = "my-org";
+    private Property<Boolean> checkpoint = Property.of(false);
 
     @Schema(
-        title = "InfluxDB bucket",
-        description = "The bucket name in InfluxDB"
+        title = "Minimum time between two saves of the checkpoint",
+        description = "Only used with `checkpoint`. A shorter interval sends fewer batches again on resume but adds " +
+            "a state store round-trip to more write requests, 0 saves after every batch."
     )
     @Builder.Default
-    private String bucket = "my-bucket";
+    private Property<Duration> checkpointInterval = Property.of(Duration.ofSeconds(5));
 
-    /**
-     * Examples:
-     * cpu,host=server01,region=us_west value=0.64 1422568543702900257
-     * cpu,host=server01,region=us_west value=0.66 1422568543702900258
-     * cpu,host=server02,region=eu_central value=0.88 1422568543702900259
-     * mem,host=server01,region=us_west free=1024,total=4096 1422568543702900260
-     * mem,host=server02,region=eu_central free=2048,total=8192 1422568543702900261
-     * http_requests,method=GET,status=200 count=1 1422568543702900262
-     * http_requests,method=POST,status=400 count=3 1422568543702900263
-     */
     @Schema(
-        title = "Wire format data",
-        description = "The data to write in InfluxDB Line Protocol format"
+        title = "Write to a spool on the local disk drained to InfluxDB in the background",
+        description = "The points are appended to an append-only log on the worker disk and the task succeeds as soon " +
+            "as they are flushed to it, whether InfluxDB is available or not. A background drainer then writes them " +
+            "in batches of `batchSize` points, retrying with a backoff while the server is unavailable, and resumes " +
+            "where it stopped after a worker restart on the next write to the same URL, organization and bucket. " +
+            "`mode` and `concurrency` are ignored, the queue depth and drain rate are reported in the metrics."
     )
-    private Property<String> wireInputMultilineData;
+    private SpoolOptions spool;
+
+    @Schema(
+        title = "Sort the points by series key and timestamp before writing",
+        description = "InfluxDB ingests points grouped by series and in time order faster, and compresses them better. " +
+            "The input is sorted by runs of `sortBufferSize` lines spilled to temporary files, so the whole input is " +
+            "never loaded in memory."
+    )
+    @Builder.Default
+    private Property<Boolean> sort = Property.of(false);
+
+    @Schema(
+        title = "Collapse the points of a series that have the same timestamp",
+        description = "InfluxDB keeps only the last point written for a series and a timestamp, merging their fields. " +
+            "KEEP_LAST only sends the last point of the input, MERGE_FIELDS sends a single point with the fields of " +
+            "all of them, the last value of a field winning, which is what the server would store. " +
+            "Implies `sort`, points without timestamp are never collapsed."
+    )
+    @Builder.Default
+    private Property<Deduplicate> deduplicate = Property.of(Deduplicate.NONE);
+
+    @Schema(
+        title = "Maximum number of lines sorted in memory",
+        description = "Only used with `sort` or `deduplicate`, larger inputs are sorted in several runs merged from disk."
+    )
+    @Builder.Default
+    private Property<Integer> sortBufferSize = Property.of(100_000);
+
+    @Schema(
+        title = "Number of concurrent writers",
+        description = "Only used with the BLOCKING mode. The points are partitioned by series key, the measurement and " +
+            "its tags, and each partition is sent by its own writer with a single request in flight, so the points " +
+            "of a series are always written in the input order."
+    )
+    @Builder.Default
+    private Property<Integer> concurrency = Property.of(1);
+
+    @Schema(
+        title = "Maximum number of points sent in a single write request"
+    )
+    @Builder.Default
+    private Property<Integer> batchSize = Property.of(5000);
+
+    @Schema(
+        title = "Maximum number of bytes sent in a single write request"
+    )
+    @Builder.Default
+    private Property<Long> maxBatchBytes = Property.of(10L * 1024 * 1024);
+
+    @Schema(
+        title = "Maximum time a partial batch waits for more points before being sent",
+        description = "Only used with the BATCHING mode."
+    )
+    @Builder.Default
+    private Property<Duration> flushInterval = Property.of(Duration.ofSeconds(1));
+
+    @Schema(
+        title = "Random delay added to each batch to avoid write bursts from several tasks",
+        description = "Only used with the BATCHING mode."
+    )
+    @Builder.Default
+    private Property<Duration> jitterInterval = Property.of(Duration.ZERO);
+
+    @Schema(
+        title = "Maximum number of batches buffered in the client",
+        description = "Only used with the BATCHING mode, when reached the oldest batch is dropped " +
+            "and a backpressure event is reported."
+    )
+    @Builder.Default
+    private Property<Integer> bufferLimit = Property.of(100);
+
+    @Schema(
+        title = "Maximum number of retries of a failed batch",
+        description = "With the BLOCKING mode, only the batches rejected with a 429 or 503 status are retried, " +
+            "after the `Retry-After` delay sent by the server or an exponential backoff. The batch size and the " +
+            "number of concurrent requests are then halved and grow back while the server keeps up."
+    )
+    @Builder.Default
+    private Property<Integer> maxRetries = Property.of(5);
 
     @Override
     public Output run(RunContext runContext) throws Exception {
-        var rawWireInputMultilineData = runContext.render(wireInputMultilineData).as(String.class).orElse("");
+        var modeValue = runContext.render(mode).as(Mode.class).orElseThrow();
+        var clientKey = this.clientKey(runContext);
+        var tags = metricTags(clientKey);
+        var guard = this.cardinalityGuard(runContext);
+        // the lines are only observed once, while validating if enabled
+        var writeGuard = guard;
+
+        if (runContext.render(validate).as(Boolean.class).orElseThrow()) {
+            var started = System.nanoTime();
+            try (var reader = this.reader(runContext)) {
+                validate(reader, guard);
+            }
+            runContext.metric(Timer.of("validate.duration", Duration.ofNanos(System.nanoTime() - started), tags));
+            writeGuard = null;
+        }
+
+        var requestNanos = new LongAdder();
+        var checkpointValue = this.checkpoint(runContext, modeValue);
+        var sorted = this.sort(runContext, tags);
+
+        try (
+            var lease = this.client(clientKey);
+            var reader = sorted != null ?
+                new LineNumberReader(Files.newBufferedReader(sorted.path(), StandardCharsets.UTF_8), FileSerde.BUFFER_SIZE) :
+                this.reader(runContext)
+        ) {
+            var started = System.nanoTime();
+            var output = spool != null ? writeSpooled(runContext, clientKey, tags, reader, writeGuard) : switch (modeValue) {
+                case BLOCKING -> writeBlocking(runContext, lease.client(), reader, requestNanos, checkpointValue, writeGuard);
+                case BATCHING -> writeBatching(runContext, lease.client(), reader, writeGuard);
+            };
+            var elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+            if (checkpointValue != null) {
+                checkpointValue.delete();
+            }
+
+            output = output.toBuilder()
+                .duplicates(sorted != null ? sorted.duplicates() : 0)
+                .seriesCardinality(guard != null ? guard.series() : null)
+                .tagCardinality(guard != null ? guard.tags() : null)
+                .pointsPerSecond(elapsed.isZero() ? 0 : output.getCount() * 1_000_000_000.0 / elapsed.toNanos())
+                .build();
+
+            if (spool == null) {
+                runContext.logger().info(
+                    "Wrote {} points ({} bytes) in {} batches, {} points/s",
+                    output.getCount(), output.getBytes(), output.getBatches(), Math.round(output.getPointsPerSecond())
+                );
+            }
+
+            runContext.metric(Counter.of("points", output.getCount(), tags));
+            runContext.metric(Counter.of("bytes.sent", output.getBytes(), tags));
+            runContext.metric(Counter.of("batches", output.getBatches(), tags));
+            runContext.metric(Counter.of("retries", output.getRetries(), tags));
+            if (sorted != null) {
+                runContext.metric(Counter.of("duplicates", output.getDuplicates(), tags));
+            }
+            if (guard != null) {
+                runContext.metric(Counter.of("series.cardinality", output.getSeriesCardinality(), tags));
+                for (var entry : output.getTagCardinality().entrySet()) {
+                    var tagKeyTags = Arrays.copyOf(tags, tags.length + 2);
+                    tagKeyTags[tags.length] = "tag_key";
+                    tagKeyTags[tags.length + 1] = entry.getKey();
+                    runContext.metric(Counter.of("tag.cardinality", entry.getValue(), tagKeyTags));
+                }
+            }
+            if (spool != null) {
+                runContext.metric(Counter.of("spool.pending.bytes", output.getSpoolPendingBytes(), tags));
+                runContext.metric(Counter.of("spool.segments", output.getSpoolSegments(), tags));
+            } else if (modeValue == Mode.BLOCKING) {
+                // BATCHING requests are sent asynchronously and overlap, their duration is not meaningful
+                runContext.metric(Timer.of("request.duration", Duration.ofNanos(requestNanos.sum()), tags));
+            } else {
+                runContext.metric(Counter.of("backpressure.events", output.getBackpressureEvents(), tags));
+                runContext.metric(Counter.of("errors", output.getErrors() == null ? 0 : output.getErrors().size(), tags));
+            }
+
+            return output;
+        } finally {
+            if (sorted != null) {
+                Files.deleteIfExists(sorted.path());
+            }
+        }
+    }
+
+    /**
+     * @return the input sorted in a temporary file, {@code null} if it does not need to be sorted
+     */
+    private Sorted sort(RunContext runContext, String[] tags) throws Exception {
+        var deduplicateValue = runContext.render(deduplicate).as(Deduplicate.class).orElseThrow();
+        if (!runContext.render(sort).as(Boolean.class).orElseThrow() && deduplicateValue == Deduplicate.NONE) {
+            return null;
+        }
+
+        var started = System.nanoTime();
+        var sorter = new LineProtocolSorter(
+            deduplicateValue,
+            runContext.render(sortBufferSize).as(Integer.class).orElseThrow(),
+            runContext.workingDir().path()
+        );
+
+        var path = runContext.workingDir().createTempFile(".lp");
+        try (
+            var reader = this.reader(runContext);
+            var writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)
+        ) {
+            var result = sorter.sort(reader, writer);
+
+            runContext.logger().info(
+                "Sorted {} points in {} runs, {} duplicates collapsed", result.lines(), Math.max(result.runs(), 1), result.duplicates()
+            );
+            runContext.metric(Timer.of("sort.duration", Duration.ofNanos(System.nanoTime() - started), tags));
+
+            return new Sorted(path, result.duplicates());
+        } catch (Exception e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    private record Sorted(Path path, int duplicates) {
+    }
+
+    private CardinalityGuard cardinalityGuard(RunContext runContext) throws IllegalVariableEvaluationException {
+        if (cardinality == null) {
+            return null;
+        }
+
+        return new CardinalityGuard(
+            runContext.render(cardinality.getMaxSeries()).as(Long.class).orElse(null),
+            runContext.render(cardinality.getMaxTagValues()).as(Long.class).orElse(null),
+            runContext.render(cardinality.getAction()).as(CardinalityLimits.Action.class).orElseThrow(),
+            runContext.logger()
+        );
+    }
+
+    private WriteCheckpoint checkpoint(RunContext runContext, Mode mode) throws Exception {
+        if (!runContext.render(checkpoint).as(Boolean.class).orElseThrow()) {
+            return null;
+        }
+
+        var fromValue = runContext.render(from).as(String.class);
+        if (fromValue.isEmpty() || mode != Mode.BLOCKING || runContext.render(concurrency).as(Integer.class).orElseThrow() > 1 || spool != null) {
+            throw new IllegalArgumentException("'checkpoint' can only be used with 'from', the BLOCKING mode and a concurrency of 1, without 'spool'");
+        }
+
+        return WriteCheckpoint.of(
+            runContext, this.id, fromValue.get(), runContext.render(checkpointInterval).as(Duration.class).orElseThrow()
+        );
+    }
+
+    private Output writeBlocking(
+        RunContext runContext,
+        InfluxDBClient client,
+        LineNumberReader reader,
+        LongAdder requestNanos,
+        WriteCheckpoint checkpoint,
+        CardinalityGuard guard
+    ) throws Exception {
+        var concurrencyValue = runContext.render(concurrency).as(Integer.class).orElseThrow();
+        var controller = new WriteRateController(
+            runContext.render(batchSize).as(Integer.class).orElseThrow(),
+            concurrencyValue,
+            runContext.render(maxRetries).as(Integer.class).orElseThrow()
+        );
+
+        var writeApi = client.getWriteApiBlocking();
+        PartitionedWriter.Sender sender = batch -> {
+            var started = System.nanoTime();
+            writeApi.writeRecord(WritePrecision.NS, batch.lines());
+            requestNanos.add(System.nanoTime() - started);
+        };
+
+        var output = concurrencyValue > 1 ?
+            writeConcurrently(runContext, reader, concurrencyValue, controller, sender, guard) :
+            writeSequentially(runContext, reader, controller, sender, checkpoint, guard);
+
+        if (controller.retries() > 0) {
+            runContext.logger().warn(
+                "The server throttled the writes, {} requests were retried, ended with batches of {} points and {} requests in flight",
+                controller.retries(), controller.batchSize(), controller.concurrency()
+            );
+        }
+
+        return output.toBuilder()
+            .retries(controller.retries())
+            .build();
+    }
+
+    private Output writeSequentially(
+        RunContext runContext,
+        LineNumberReader reader,
+        WriteRateController controller,
+        PartitionedWriter.Sender sender,
+        WriteCheckpoint checkpoint,
+        CardinalityGuard guard
+    ) throws Exception {
+        var skipped = 0;
+        var state = checkpoint != null ? checkpoint.load() : null;
+        if (state != null) {
+            runContext.logger().info("Resuming after {} lines and {} batches already written", state.lines(), state.batches());
+
+            while (reader.getLineNumber() < state.lines() && reader.readLine() != null) {
+                // skip the lines already written
+            }
+            skipped = state.batches();
+        }
+
+        var batcher = new LineProtocolBatcher(
+            controller.batchSize(),
+            runContext.render(maxBatchBytes).as(Long.class).orElseThrow(),
+            null
+        );
 
-        try (InfluxDBClient influxDBClient = InfluxDBClientFactory.create(
-            url,
-            token.toCharArray(),
-            org,
-            bucket
+        int count = 0;
+        long bytes = 0;
+        int batches = 0;
+
+        String line;
+        LineProtocolBatcher.Batch batch;
+        do {
+            line = nextLine(reader, guard);
+            batcher.maxPoints(controller.batchSize());
+            batch = line != null ? batcher.add(line) : batcher.flush();
+
+            if (batch != null) {
+                controller.send(batch, sender);
+
+                count += batch.points();
+                bytes += batch.bytes();
+                batches++;
+
+                if (checkpoint != null) {
+                    // the current line was not part of the batch, it is in the next one
+                    checkpoint.update(line != null ? reader.getLineNumber() - 1 : reader.getLineNumber(), skipped + batches);
+                }
+            }
+        } while (line != null);
+
+        return Output.builder()
+            .count(count)
+            .bytes(bytes)
+            .batches(batches)
+            .skippedBatches(skipped)
+            .build();
+    }
+
+    private Output writeConcurrently(
+        RunContext runContext,
+        BufferedReader reader,
+        int concurrency,
+        WriteRateController controller,
+        PartitionedWriter.Sender sender,
+        CardinalityGuard guard
+    ) throws Exception {
+        try (var writer = new PartitionedWriter(
+            concurrency,
+            controller::batchSize,
+            runContext.render(maxBatchBytes).as(Long.class).orElseThrow(),
+            batch -> controller.send(batch, sender)
         )) {
-            var writeApi = influxDBClient.getWriteApiBlocking();
-            writeApi.writeRecord(bucket, org, WritePrecision.NS, rawWireInputMultilineData);
+            String line;
+            while ((line = nextLine(reader, guard)) != null) {
+                writer.add(line);
+            }
 
-            // Count the number of lines written
-            var count = rawWireInputMultilineData.lines()
-                .map(String::trim)
-                .filter(line -> !line.isEmpty())
-                .count();
+            var result = writer.finish();
 
             return Output.builder()
-                .count((int) count)
+                .count(result.count())
+                .bytes(result.bytes())
+                .batches(result.batches())
                 .build();
         }
     }
 
+    private Output writeSpooled(RunContext runContext, InfluxDBClientPool.Key clientKey, String[] tags, BufferedReader reader, CardinalityGuard guard) throws Exception {
+        var base = runContext.render(spool.getDirectory()).as(String.class)
+            .map(Path::of)
+            .orElseGet(() -> Path.of(System.getProperty("java.io.tmpdir"), "kestra-influxdb-spool"));
+
+        var writeSpool = WriteSpool.of(
+            WriteSpool.directory(base, clientKey.url(), clientKey.org(), clientKey.bucket()),
+            runContext.render(spool.getMaxBytes()).as(Long.class).orElseThrow(),
+            runContext.render(spool.getSegmentBytes()).as(Long.class).orElseThrow()
+        );
+
+        var appended = writeSpool.append(() -> nextLine(reader, guard));
+        writeSpool.drainTo(new WriteSpool.Target(
+            clientKey,
+            runContext.render(batchSize).as(Integer.class).orElseThrow(),
+            runContext.render(maxBatchBytes).as(Long.class).orElseThrow(),
+            runContext.render(maxRetries).as(Integer.class).orElseThrow()
+        ));
+
+        var stats = writeSpool.stats();
+        runContext.logger().info(
+            "Spooled {} points ({} bytes), {} bytes in {} segments waiting to be written, {} points drained since the previous write",
+            appended.points(), appended.bytes(), stats.pendingBytes(), stats.segments(), stats.drainedPoints()
+        );
+
+        // the drain happens in the background, it is reported by the writes that follow it
+        runContext.metric(Counter.of("spool.drained.points", stats.drainedPoints(), tags));
+        runContext.metric(Timer.of("spool.drain.duration", stats.drainDuration(), tags));
+
+        return Output.builder()
+            .count(appended.points())
+            .bytes(appended.bytes())
+            .spoolPendingBytes(stats.pendingBytes())
+            .spoolSegments(stats.segments())
+            .build();
+    }
+
+    private Output writeBatching(RunContext runContext, InfluxDBClient client, BufferedReader reader, CardinalityGuard guard) throws Exception {
+        var flushIntervalValue = runContext.render(flushInterval).as(Duration.class).orElseThrow();
+        var jitterIntervalValue = runContext.render(jitterInterval).as(Duration.class).orElseThrow();
+        var batcher = new LineProtocolBatcher(
+            runContext.render(batchSize).as(Integer.class).orElseThrow(),
+            runContext.render(maxBatchBytes).as(Long.class).orElseThrow(),
+            flushIntervalValue
+        );
+
+        // batches are built by the batcher, the client sends each of them as a single request.
+        // The io scheduler is used as disposing the retry timer of the default new thread scheduler interrupts
+        // the thread that may already be sending the next batch.
+        var writeOptions = WriteOptions.builder()
+            .batchSize(1)
+            .writeScheduler(Schedulers.io())
+            .jitterInterval((int) jitterIntervalValue.toMillis())
+            .bufferLimit(runContext.render(bufferLimit).as(Integer.class).orElseThrow())
+            .maxRetries(runContext.render(maxRetries).as(Integer.class).orElseThrow())
+            .build();
+
+        var count = new AtomicInteger();
+        var bytes = new AtomicLong();
+        var batches = new AtomicInteger();
+        var retries = new AtomicInteger();
+        var backpressures = new AtomicInteger();
+        var errors = new ConcurrentLinkedQueue<String>();
+        var pending = new Semaphore(0);
+
+        // events are published from the client scheduler threads, every submitted batch ends up either written,
+        // failed after all its retries or dropped because of backpressure
+        var writeApi = client.makeWriteApi(writeOptions);
+        writeApi.listenEvents(WriteSuccessEvent.class, event -> {
+            count.addAndGet(countLines(event.getLineProtocol()));
+            // the batches built by the batcher already end with a new line
+            bytes.addAndGet(LineProtocolBatcher.utf8Length(event.getLineProtocol()));
+            batches.incrementAndGet();
+            pending.release();
+        });
+        writeApi.listenEvents(WriteRetriableErrorEvent.class, event -> {
+            retries.incrementAndGet();
+            runContext.logger().warn("Write failed, retrying in {} ms: {}", event.getRetryInterval(), errorMessage(event.getThrowable()));
+        });
+        writeApi.listenEvents(WriteErrorEvent.class, event -> {
+            errors.add(errorMessage(event.getThrowable()));
+            runContext.logger().error("Write failed: {}", errorMessage(event.getThrowable()), event.getThrowable());
+            pending.release();
+        });
+        writeApi.listenEvents(BackpressureEvent.class, event -> {
+            backpressures.incrementAndGet();
+            runContext.logger().warn("Backpressure applied: {}", event.getReason());
+            if (event.getReason() == BackpressureEvent.BackpressureReason.TOO_MUCH_BATCHES) {
+                pending.release();
+            }
+        });
+
+        try {
+            int submitted = 0;
+            long submittedPoints = 0;
+
+            String line;
+            LineProtocolBatcher.Batch batch;
+            do {
+                line = nextLine(reader, guard);
+                batch = line != null ? batcher.add(line) : batcher.flush();
+
+                if (batch != null) {
+                    writeApi.writeRecord(WritePrecision.NS, batch.lines());
+                    submitted++;
+                    submittedPoints += batch.points();
+                }
+            } while (line != null);
+
+            // the client stops publishing events once closed, so wait for all the batches before closing it.
+            // A batch is acknowledged at the latest after its jitter and all its retries, the wait fails if none is
+            // acknowledged for longer rather than hanging on an event that will never come.
+            var timeout = flushIntervalValue.plus(jitterIntervalValue)
+                .plusMillis((long) (writeOptions.getMaxRetries() + 1) * writeOptions.getMaxRetryDelay());
+            for (int acknowledged = 0; acknowledged < submitted; acknowledged++) {
+                if (!pending.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException(
+                        (submitted - acknowledged) + " of " + submitted + " batches were not acknowledged by the client after " +
+                            timeout + ", " + (submittedPoints - count.get()) + " points are not confirmed as written"
+                    );
+                }
+            }
+        } finally {
+            writeApi.close();
+        }
+
+        return Output.builder()
+            .count(count.get())
+            .bytes(bytes.get())
+            .batches(batches.get())
+            .retries(retries.get())
+            .backpressureEvents(backpressures.get())
+            .errors(errors.isEmpty() ? null : List.copyOf(errors))
+            .build();
+    }
+
+    private static String errorMessage(Throwable throwable) {
+        if (throwable instanceof InfluxException influxException && influxException.status() > 0) {
+            return "HTTP " + influxException.status() + (influxException.getMessage() != null ? ": " + influxException.getMessage() : "");
+        }
+        return throwable.toString();
+    }
+
+    private static int countLines(String lineProtocol) {
+        int lines = 0;
+        for (int i = 0; i < lineProtocol.length(); i++) {
+            if (lineProtocol.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lineProtocol.isEmpty() || lineProtocol.charAt(lineProtocol.length() - 1) == '\n' ? lines : lines + 1;
+    }
+
+    private static void validate(BufferedReader reader, CardinalityGuard guard) throws IOException {
+        var point = new LineProtocolParser.Point();
+        var errors = new ArrayList<String>();
+        int invalid = 0;
+        int lineNumber = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            line = line.strip();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+
+            try {
+                LineProtocolParser.parse(line, point);
+            } catch (IllegalArgumentException e) {
+                invalid++;
+                if (errors.size() < 10) {
+                    errors.add("line " + lineNumber + ": " + e.getMessage());
+                }
+                continue;
+            }
+
+            if (guard != null) {
+                guard.observe(line);
+            }
+        }
+
+        if (guard != null) {
+            guard.check();
+        }
+
+        if (invalid > 0) {
+            throw new IllegalArgumentException(
+                "Found " + invalid + " invalid Line Protocol lines, nothing has been written:\n" + String.join("\n", errors)
+            );
+        }
+    }
+
+    /**
+     * @param guard the cardinality guard that observes each line, can be {@code null}
+     * @return the next Line Protocol line, skipping blank and comment lines, or {@code null} at the end of the input
+     */
+    private static String nextLine(BufferedReader reader, CardinalityGuard guard) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.strip();
+            if (!line.isEmpty() && line.charAt(0) != '#') {
+                if (guard != null) {
+                    guard.observe(line);
+                }
+                return line;
+            }
+        }
+
+        if (guard != null) {
+            // the last batch is sent once the end of the input is reached
+            guard.check();
+        }
+        return null;
+    }
+
+    private LineNumberReader reader(RunContext runContext) throws Exception {
+        var fromValue = runContext.render(from).as(String.class);
+        if (fromValue.isPresent()) {
+            if (wireInputMultilineData != null) {
+                throw new IllegalArgumentException("Only one of 'wireInputMultilineData' or 'from' can be set");
+            }
+
+            var input = new BufferedInputStream(runContext.storage().getFile(URI.create(fromValue.get())), FileSerde.BUFFER_SIZE);
+
+            // detect gzip from the magic number rather than the file extension
+            input.mark(2);
+            var gzipped = input.read() == 0x1f && input.read() == 0x8b;
+            input.reset();
+
+            var text = new InputStreamReader(gzipped ? new GZIPInputStream(input, FileSerde.BUFFER_SIZE) : input, StandardCharsets.UTF_8);
+            if (mapping != null) {
+                return new LineNumberReader(
+                    new RecordLineReader(new BufferedReader(text, FileSerde.BUFFER_SIZE), mapping.compile(runContext), runContext.logger()),
+                    FileSerde.BUFFER_SIZE
+                );
+            }
+
+            return new LineNumberReader(text, FileSerde.BUFFER_SIZE);
+        }
+
+        if (mapping != null) {
+            throw new IllegalArgumentException("'mapping' can only be used with 'from'");
+        }
+
+        return new LineNumberReader(new StringReader(runContext.render(wireInputMultilineData).as(String.class).orElse("")));
+    }
+
     public record Measurement(
         String name,
         Map<String, String> tags,
@@ -129,54 +851,48 @@ public class Write extends Task implements RunnableTask<Write.Output> {
         Long timestamp
     ) {
         public static Measurement fromWireLine(String line) {
-            var parts = line.trim().split("\\s+");
-            if (parts.length != 3) {
-                throw new IllegalArgumentException("Invalid WIRE format line: " + line);
-            }
-
-            var measurementAndTags = parts[0].split(",", 2);
-            var name = measurementAndTags[0];
-            Map<String, String> tags = new HashMap<>();
-            if (measurementAndTags.length > 1) {
-                String[] tagPairs = measurementAndTags[1].split(",");
-                for (String pair : tagPairs) {
-                    String[] keyValue = pair.split("=", 2);
-                    tags.put(keyValue[0], keyValue[1]);
-                }
+            try {
+                return from(LineProtocolParser.parse(line.strip(), new LineProtocolParser.Point()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid WIRE format line: " + line + ", " + e.getMessage(), e);
             }
+        }
 
-            Map<String, Object> fields = new HashMap<>();
-            var fieldPairs = parts[1].split(",");
-            for (var pair : fieldPairs) {
-                var keyValue = pair.split("=", 2);
-                var value = keyValue[1];
-                try {
-                    if (value.contains(".")) {
-                        fields.put(keyValue[0], Double.parseDouble(value));
-                    } else {
-                        fields.put(keyValue[0], Long.parseLong(value));
-                    }
-                } catch (NumberFormatException e) {
-                    fields.put(keyValue[0], value.replaceAll("^\"|\"$", ""));
-                }
-            }
+        // Convert multiple WIRE format lines into a list of Measurements
+        public static List<Measurement> fromWireLines(String multilineData) {
+            var point = new LineProtocolParser.Point();
+            var measurements = new ArrayList<Measurement>();
 
-            var timestamp = Long.parseLong(parts[2]);
+            multilineData.lines()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && line.charAt(0) != '#')
+                .forEach(line -> {
+                    try {
+                        measurements.add(from(LineProtocolParser.parse(line, point)));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Invalid WIRE format line: " + line + ", " + e.getMessage(), e);
+                    }
+                });
 
-            return new Measurement(name, tags, fields, timestamp);
+            return measurements;
         }
 
-        // Convert multiple WIRE format lines into a list of Measurements
-        public static List<Measurement> fromWireLines(String multilineData) {
-            return Arrays.stream(multilineData.split("\n"))
-                .map(String::trim)
-                .filter(line -> !line.isEmpty())
-                .map(Measurement::fromWireLine)
-                .toList();
+        static Measurement from(LineProtocolParser.Point point) {
+            Map<String, String> tags = HashMap.newHashMap(point.tagCount());
+            for (int i = 0; i < point.tagCount(); i++) {
+                tags.put(point.tagKey(i), point.tagValue(i));
+            }
+
+            Map<String, Object> fields = HashMap.newHashMap(point.fieldCount());
+            for (int i = 0; i < point.fieldCount(); i++) {
+                fields.put(point.fieldKey(i), point.fieldValue(i));
+            }
+
+            return new Measurement(point.measurement(), tags, fields, point.hasTimestamp() ? point.timestamp() : null);
         }
     }
 
-    @Builder
+    @Builder(toBuilder = true)
     @Getter
     public static class Output implements io.kestra.core.models.tasks.Output {
         @Schema(
@@ -184,5 +900,90 @@ public class Write extends Task implements RunnableTask<Write.Output> {
             description = "How many measurements have been written to InfluxDB"
         )
         private final int count;
+
+        @Schema(
+            title = "Bytes sent",
+            description = "How many bytes of Line Protocol have been sent to InfluxDB"
+        )
+        private final long bytes;
+
+        @Schema(
+            title = "Batches sent",
+            description = "How many write requests have been sent to InfluxDB"
+        )
+        private final int batches;
+
+        @Schema(
+            title = "Retries",
+            description = "How many write requests have been retried"
+        )
+        private final int retries;
+
+        @Schema(
+            title = "Points per second",
+            description = "The write rate achieved, from the first line read to the last batch written"
+        )
+        private final double pointsPerSecond;
+
+        @Schema(
+            title = "Duplicates",
+            description = "How many points have been collapsed into another one of the same series and timestamp, " +
+                "only with `deduplicate`"
+        )
+        private final int duplicates;
+
+        @Schema(
+            title = "Estimated number of distinct series",
+            description = "Only with `cardinality`, the estimate is usually within 1% of the exact value"
+        )
+        private final Long seriesCardinality;
+
+        @Schema(
+            title = "Estimated number of distinct values of each tag key",
+            description = "Only with `cardinality`"
+        )
+        private final Map<String, Long> tagCardinality;
+
+        @Schema(
+            title = "Skipped batches",
+            description = "How many batches were not sent again because a previous attempt already wrote them, " +
+                "only with `checkpoint`"
+        )
+        private final int skippedBatches;
+
+        @Schema(
+            title = "Bytes waiting in the spool",
+            description = "Only with `spool`, including the points of this write"
+        )
+        private final Long spoolPendingBytes;
+
+        @Schema(
+            title = "Segment files of the spool",
+            description = "Only with `spool`"
+        )
+        private final Integer spoolSegments;
+
+        @Schema(
+            title = "Backpressure events",
+            description = "How many times a batch has been dropped because the buffer was full, only with the BATCHING mode"
+        )
+        private final int backpressureEvents;
+
+        @Schema(
+            title = "Write errors",
+            description = "The errors of the batches that could not be written, only with the BATCHING mode"
+        )
+        private final List<String> errors;
+    }
+
+    public enum Mode {
+        BLOCKING,
+        BATCHING
+    }
+
+    public enum Deduplicate {
+        NONE,
+        KEEP_LAST,
+        MERGE_FIELDS
     }
 }
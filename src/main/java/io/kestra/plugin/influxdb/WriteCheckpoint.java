@@ -0,0 +1,84 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.exceptions.ResourceExpiredException;
+import io.kestra.core.runners.RunContext;
+import io.kestra.core.serializers.JacksonMapper;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Position of the last acknowledged batch of a file write, kept in the state store so a retried or restarted task run
+ * of the same execution resumes after it instead of sending the whole file again.
+ * <p>
+ * The position is a number of lines rather than a byte offset, so it also works with gzipped files. It is saved at most
+ * once per interval rather than after every batch, the batches acknowledged since the last save being sent again on
+ * resume, which InfluxDB overwrites with the same values.
+ */
+final class WriteCheckpoint {
+    private static final String STATE_NAME = "influxdb-write-checkpoint";
+
+    private final RunContext runContext;
+    private final String taskId;
+    private final String executionId;
+    private final String from;
+    private final long intervalNanos;
+    private long savedNanos = System.nanoTime();
+
+    private WriteCheckpoint(RunContext runContext, String taskId, String executionId, String from, Duration interval) {
+        this.runContext = runContext;
+        this.taskId = taskId;
+        this.executionId = executionId;
+        this.from = from;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    /**
+     * @param interval the minimum time between two saves of {@link #update(long, int)}
+     */
+    static WriteCheckpoint of(RunContext runContext, String taskId, String from, Duration interval) {
+        var execution = runContext.getVariables().get("execution");
+        var executionId = execution instanceof Map<?, ?> map && map.get("id") != null ? map.get("id").toString() : null;
+
+        return new WriteCheckpoint(runContext, taskId, executionId, from, interval);
+    }
+
+    /**
+     * @return the last checkpoint of this execution, {@code null} if there is none or if it was for another file
+     */
+    State load() throws IOException {
+        try (var stream = runContext.stateStore().getState(STATE_NAME, taskId, executionId)) {
+            var state = JacksonMapper.ofJson().readValue(stream, State.class);
+            return from.equals(state.from()) ? state : null;
+        } catch (FileNotFoundException | ResourceExpiredException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param lines the number of lines of the file that have been acknowledged, including blank and comment lines
+     * @param batches the number of batches that have been acknowledged
+     */
+    void save(long lines, int batches) throws IOException {
+        savedNanos = System.nanoTime();
+        runContext.stateStore().putState(STATE_NAME, taskId, executionId, JacksonMapper.ofJson().writeValueAsBytes(new State(from, lines, batches)));
+    }
+
+    /**
+     * Save the position if the interval elapsed since the previous save, see {@link #save(long, int)}.
+     */
+    void update(long lines, int batches) throws IOException {
+        if (System.nanoTime() - savedNanos >= intervalNanos) {
+            this.save(lines, batches);
+        }
+    }
+
+    void delete() throws IOException {
+        runContext.stateStore().deleteState(STATE_NAME, taskId, executionId);
+    }
+
+    record State(String from, long lines, int batches) {
+    }
+}
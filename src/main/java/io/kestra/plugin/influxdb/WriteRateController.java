@@ -0,0 +1,194 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.exceptions.InfluxException;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adapt the batch size and the number of requests in flight to what the server sustains, with an
+ * additive increase / multiplicative decrease policy.
+ * <p>
+ * A 429 or 503 response halves both limits, at most once per {@link #DECREASE_INTERVAL} as concurrent requests are
+ * usually rejected together, and the batch is retried after the {@code Retry-After} delay or an exponential backoff
+ * with jitter. Both limits then grow back slowly while the latency per point stays close to the best one observed,
+ * up to the configured values.
+ */
+final class WriteRateController {
+    static final int MIN_BATCH_SIZE = 100;
+    static final Duration DECREASE_INTERVAL = Duration.ofSeconds(1);
+
+    private static final Duration BASE_BACKOFF = Duration.ofMillis(500);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final int maxBatchSize;
+    private final int maxConcurrency;
+    private final int maxRetries;
+    private final Sleeper sleeper;
+
+    private volatile int batchSize;
+    private int concurrency;
+    private int inFlight;
+    private int successes;
+    private double latency;
+    private double bestLatency = Double.MAX_VALUE;
+    private long lastDecrease;
+
+    private final AtomicInteger retries = new AtomicInteger();
+
+    WriteRateController(int maxBatchSize, int maxConcurrency, int maxRetries) {
+        this(maxBatchSize, maxConcurrency, maxRetries, Thread::sleep);
+    }
+
+    WriteRateController(int maxBatchSize, int maxConcurrency, int maxRetries, Sleeper sleeper) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxConcurrency = maxConcurrency;
+        this.maxRetries = maxRetries;
+        this.sleeper = sleeper;
+        this.batchSize = maxBatchSize;
+        this.concurrency = maxConcurrency;
+        this.lastDecrease = System.nanoTime() - DECREASE_INTERVAL.toNanos();
+    }
+
+    /**
+     * @return the number of points the next batches should have
+     */
+    int batchSize() {
+        return batchSize;
+    }
+
+    synchronized int concurrency() {
+        return concurrency;
+    }
+
+    int retries() {
+        return retries.get();
+    }
+
+    /**
+     * Send a batch once a request slot is available, retrying it while the server is throttling.
+     */
+    void send(LineProtocolBatcher.Batch batch, PartitionedWriter.Sender sender) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            this.acquire();
+
+            Duration delay;
+            var started = System.nanoTime();
+            try {
+                sender.send(batch);
+                this.onSuccess(batch.points(), System.nanoTime() - started);
+                return;
+            } catch (InfluxException e) {
+                if (!isThrottling(e) || attempt >= maxRetries) {
+                    throw e;
+                }
+
+                this.onThrottle();
+                delay = delay(e, attempt);
+            } finally {
+                this.release();
+            }
+
+            retries.incrementAndGet();
+            sleeper.sleep(delay);
+        }
+    }
+
+    private synchronized void acquire() throws InterruptedException {
+        while (inFlight >= concurrency) {
+            this.wait();
+        }
+        inFlight++;
+    }
+
+    private synchronized void release() {
+        inFlight--;
+        this.notifyAll();
+    }
+
+    private synchronized void onSuccess(int points, long nanos) {
+        var perPoint = (double) nanos / Math.max(points, 1);
+        latency = latency == 0 ? perPoint : 0.8 * latency + 0.2 * perPoint;
+        bestLatency = Math.min(bestLatency, latency);
+
+        if (latency > 2 * bestLatency) {
+            return;
+        }
+
+        batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, maxBatchSize / 10));
+
+        // one more request in flight once a full window of requests succeeded
+        if (++successes >= concurrency) {
+            successes = 0;
+            concurrency = Math.min(maxConcurrency, concurrency + 1);
+        }
+    }
+
+    private synchronized void onThrottle() {
+        var now = System.nanoTime();
+        if (now - lastDecrease < DECREASE_INTERVAL.toNanos()) {
+            return;
+        }
+
+        lastDecrease = now;
+        successes = 0;
+        batchSize = Math.max(Math.min(MIN_BATCH_SIZE, maxBatchSize), batchSize / 2);
+        concurrency = Math.max(1, concurrency / 2);
+    }
+
+    static boolean isThrottling(InfluxException exception) {
+        return exception.status() == 429 || exception.status() == 503;
+    }
+
+    /**
+     * @return the {@code Retry-After} delay if the server sent one, an exponential backoff with jitter otherwise
+     */
+    static Duration delay(InfluxException exception, int attempt) {
+        var retryAfter = retryAfter(exception);
+        if (retryAfter != null) {
+            return retryAfter;
+        }
+
+        var backoff = BASE_BACKOFF.toMillis() << Math.min(attempt, 16);
+        var capped = Math.min(backoff, MAX_BACKOFF.toMillis());
+
+        return Duration.ofMillis(capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1));
+    }
+
+    private static Duration retryAfter(InfluxException exception) {
+        if (exception.headers() == null) {
+            return null;
+        }
+
+        var value = exception.headers().entrySet().stream()
+            .filter(header -> header.getKey().equalsIgnoreCase("Retry-After"))
+            .map(header -> header.getValue().strip())
+            .findFirst()
+            .orElse(null);
+
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return Duration.ofSeconds(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            try {
+                var date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                var delay = Duration.between(ZonedDateTime.now(), date);
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(Duration duration) throws InterruptedException;
+    }
+}
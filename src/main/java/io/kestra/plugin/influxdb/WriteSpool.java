@@ -0,0 +1,553 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.client.domain.WritePrecision;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A durable buffer of Line Protocol lines on the local disk, drained to InfluxDB in the background.
+ * <p>
+ * The lines are appended to segment files of about {@code segmentBytes}, each {@link #append} being committed as a
+ * whole: the drainer only reads up to the last commit and a failed append is truncated away. The positions of the last
+ * commit and of the last batch acknowledged by InfluxDB are kept in a state file, so a restarted worker drains the
+ * rest without losing or resending points. A segment is deleted as soon as it is fully drained, and the active segment
+ * is started over once drained, so an idle spool takes no disk space.
+ * <p>
+ * There is a single spool per directory in the JVM, and a lock file keeps other processes out of it.
+ */
+final class WriteSpool {
+    private static final Logger logger = LoggerFactory.getLogger(WriteSpool.class);
+    private static final Map<Path, WriteSpool> SPOOLS = new HashMap<>();
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private volatile long maxBytes;
+    private volatile long segmentBytes;
+
+    // the active segment, only used while holding the append lock
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private long activeId;
+    private long activeSize;
+    private FileChannel activeChannel;
+    private BufferedOutputStream activeOutput;
+
+    // committed size of each segment and positions of the last commit and the last acknowledged batch, guarded by this
+    private final TreeMap<Long, Long> segments = new TreeMap<>();
+    private long committedId;
+    private long committedOffset;
+    private long ackId;
+    private long ackOffset;
+
+    private final LongAdder drainedPoints = new LongAdder();
+    private final LongAdder drainNanos = new LongAdder();
+    private volatile Target target;
+    private volatile boolean closed;
+    private Thread drainer;
+
+    private WriteSpool(Path directory, long maxBytes, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.lock = lockChannel.tryLock();
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("The spool " + directory + " is used by another process");
+        }
+
+        this.recover();
+    }
+
+    /**
+     * @return the spool of the directory, opened and recovered on first use
+     */
+    static WriteSpool of(Path directory, long maxBytes, long segmentBytes) throws IOException {
+        if (maxBytes <= 0 || segmentBytes <= 0) {
+            throw new IllegalArgumentException("The spool 'maxBytes' and 'segmentBytes' must be positive");
+        }
+
+        var key = directory.toAbsolutePath().normalize();
+        synchronized (SPOOLS) {
+            var spool = SPOOLS.get(key);
+            if (spool == null) {
+                spool = new WriteSpool(key, maxBytes, segmentBytes);
+                SPOOLS.put(key, spool);
+            } else {
+                // the settings of the last write win
+                spool.maxBytes = maxBytes;
+                spool.segmentBytes = segmentBytes;
+            }
+            return spool;
+        }
+    }
+
+    /**
+     * @return the directory of the spool of a URL, organization and bucket under the base directory
+     */
+    static Path directory(Path base, String url, String org, String bucket) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.join("\n", url, org, bucket).getBytes(StandardCharsets.UTF_8));
+            return base.resolve(HexFormat.of().formatHex(digest.digest(), 0, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Append the lines until {@code lines} returns {@code null} and commit them, or none of them if it fails.
+     *
+     * @throws IllegalStateException if the lines don't fit in {@code maxBytes}
+     */
+    Appended append(Lines lines) throws Exception {
+        appendLock.lock();
+        try {
+            this.compact();
+
+            var startId = activeId;
+            var startSize = activeSize;
+            var sealed = new TreeMap<Long, Long>();
+            long available;
+            synchronized (this) {
+                available = maxBytes - this.pendingBytes();
+            }
+            int points = 0;
+            long bytes = 0;
+
+            try {
+                String line;
+                while ((line = lines.next()) != null) {
+                    var encoded = line.getBytes(StandardCharsets.UTF_8);
+                    var length = encoded.length + 1;
+
+                    if (bytes + length > available) {
+                        throw new IllegalStateException(
+                            "The spool " + directory + " is full, " + (maxBytes - available) + " bytes are waiting to be written " +
+                                "and the limit is " + maxBytes + " bytes"
+                        );
+                    }
+
+                    if (activeSize > 0 && activeSize + length > segmentBytes) {
+                        activeOutput.flush();
+                        activeChannel.force(false);
+                        activeChannel.close();
+                        sealed.put(activeId, activeSize);
+
+                        activeId++;
+                        this.open(activeId, 0);
+                    }
+
+                    activeOutput.write(encoded);
+                    activeOutput.write('\n');
+                    activeSize += length;
+                    bytes += length;
+                    points++;
+                }
+
+                activeOutput.flush();
+                activeChannel.force(false);
+            } catch (Exception e) {
+                this.rollback(startId, startSize);
+                throw e;
+            }
+
+            synchronized (this) {
+                segments.putAll(sealed);
+                segments.put(activeId, activeSize);
+                committedId = activeId;
+                committedOffset = activeSize;
+                this.writeState();
+                this.notifyAll();
+            }
+
+            return new Appended(points, bytes);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Start over with a new active segment when the current one has been fully drained.
+     */
+    private void compact() throws IOException {
+        synchronized (this) {
+            if (activeSize == 0 || ackId != activeId || ackOffset != activeSize) {
+                return;
+            }
+
+            activeChannel.close();
+            Files.deleteIfExists(this.segment(activeId));
+            segments.remove(activeId);
+
+            activeId++;
+            this.open(activeId, 0);
+
+            segments.put(activeId, 0L);
+            committedId = ackId = activeId;
+            committedOffset = ackOffset = 0;
+            this.writeState();
+        }
+    }
+
+    /**
+     * Drop what has been appended since the given position, the drainer never reads past the last commit.
+     */
+    private void rollback(long startId, long startSize) {
+        try {
+            activeChannel.close();
+            for (var id = startId + 1; id <= activeId; id++) {
+                Files.deleteIfExists(this.segment(id));
+            }
+
+            activeId = startId;
+            this.open(startId, startSize);
+        } catch (IOException e) {
+            logger.error("Unable to roll back the spool {}", directory, e);
+        }
+    }
+
+    private void open(long id, long size) throws IOException {
+        activeChannel = FileChannel.open(this.segment(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeChannel.truncate(size);
+        activeSize = size;
+        // not closed when abandoned, closing it would close the channel
+        activeOutput = new BufferedOutputStream(Channels.newOutputStream(activeChannel), BUFFER_SIZE);
+    }
+
+    /**
+     * Drain the spool to the target in the background, replacing the previous target if any.
+     */
+    synchronized void drainTo(Target target) {
+        if (closed) {
+            throw new IllegalStateException("The spool " + directory + " is closed");
+        }
+
+        this.target = target;
+        if (drainer == null) {
+            drainer = Thread.ofVirtual()
+                .name("influxdb-spool-" + directory.getFileName())
+                .start(this::drain);
+        }
+        this.notifyAll();
+    }
+
+    /**
+     * @return the current size of the spool, and the points drained since the previous call
+     */
+    synchronized Stats stats() {
+        return new Stats(
+            this.pendingBytes(),
+            segments.size(),
+            drainedPoints.sumThenReset(),
+            Duration.ofNanos(drainNanos.sumThenReset())
+        );
+    }
+
+    /**
+     * Stop the drainer and release the directory, the spool is drained again when reopened.
+     */
+    void close() throws InterruptedException, IOException {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = drainer;
+            this.notifyAll();
+        }
+        if (thread != null) {
+            thread.join();
+        }
+
+        appendLock.lock();
+        try {
+            activeChannel.close();
+            lock.release();
+            lockChannel.close();
+        } finally {
+            appendLock.unlock();
+        }
+
+        synchronized (SPOOLS) {
+            SPOOLS.remove(directory, this);
+        }
+    }
+
+    private void drain() {
+        int failures = 0;
+
+        while (true) {
+            Chunk chunk;
+            Target current;
+            synchronized (this) {
+                try {
+                    chunk = this.nextChunk();
+                } catch (InterruptedException | IOException e) {
+                    if (!closed) {
+                        logger.error("Stopped draining the spool {}", directory, e);
+                    }
+                    return;
+                }
+                if (chunk == null) {
+                    return;
+                }
+                current = target;
+            }
+
+            try (var lease = InfluxDBClientPool.INSTANCE.acquire(current.key())) {
+                var writeApi = lease.client().getWriteApiBlocking();
+                this.drain(chunk, current, batch -> writeApi.writeRecord(current.key().bucket(), current.key().org(), WritePrecision.NS, batch.lines()));
+                failures = 0;
+            } catch (Exception e) {
+                if (closed) {
+                    return;
+                }
+
+                failures++;
+                var backoff = Duration.ofSeconds(1L << Math.min(failures - 1, 6));
+                backoff = backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff;
+                logger.warn("Unable to drain the spool {}, retrying in {}: {}", directory, backoff, e.getMessage());
+
+                // new commits wake the drainer up, wait for the whole backoff anyway to not hammer the server
+                var deadline = System.nanoTime() + backoff.toNanos();
+                synchronized (this) {
+                    try {
+                        long remaining;
+                        while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+                            this.wait(Math.max(remaining / 1_000_000, 1));
+                        }
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for committed lines to drain, deleting the segments fully drained on the way.
+     *
+     * @return the committed lines of the oldest segment not drained yet, {@code null} once closed
+     */
+    private Chunk nextChunk() throws InterruptedException, IOException {
+        while (!closed) {
+            while (ackId < committedId && ackOffset >= segments.get(ackId)) {
+                this.advance();
+            }
+
+            if (this.pendingBytes() > 0) {
+                return new Chunk(ackId, ackOffset, segments.get(ackId));
+            }
+
+            this.wait();
+        }
+        return null;
+    }
+
+    private void drain(Chunk chunk, Target target, PartitionedWriter.Sender sender) throws Exception {
+        var controller = new WriteRateController(target.batchSize(), 1, target.maxRetries());
+        var batcher = new LineProtocolBatcher(controller.batchSize(), target.maxBatchBytes(), null);
+        var line = new ByteArrayOutputStream(256);
+
+        try (var channel = FileChannel.open(this.segment(chunk.id()), StandardOpenOption.READ)) {
+            channel.position(chunk.start());
+            var input = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+
+            // positions are counted in bytes as read, the lines past the limit are not committed yet
+            var position = chunk.start();
+            while (position < chunk.limit() && !closed) {
+                var start = position;
+                position += readLine(input, line);
+
+                batcher.maxPoints(controller.batchSize());
+                var batch = batcher.add(line.toString(StandardCharsets.UTF_8));
+                if (batch != null) {
+                    this.send(controller, sender, batch);
+                    this.ack(chunk.id(), start, batch.points());
+                }
+            }
+
+            var last = batcher.flush();
+            if (last != null && !closed) {
+                this.send(controller, sender, last);
+                this.ack(chunk.id(), position, last.points());
+            }
+        }
+    }
+
+    private void send(WriteRateController controller, PartitionedWriter.Sender sender, LineProtocolBatcher.Batch batch) throws Exception {
+        var started = System.nanoTime();
+        controller.send(batch, sender);
+        drainNanos.add(System.nanoTime() - started);
+    }
+
+    /**
+     * @return the number of bytes read, including the new line which is not copied in {@code line}
+     */
+    private static int readLine(InputStream input, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+
+        int read = 0;
+        int b;
+        while ((b = input.read()) != -1) {
+            read++;
+            if (b == '\n') {
+                return read;
+            }
+            line.write(b);
+        }
+        throw new IOException("Unexpected end of a spool segment after " + read + " bytes");
+    }
+
+    private synchronized void ack(long id, long offset, int points) throws IOException {
+        drainedPoints.add(points);
+        if (id != ackId) {
+            // the segment has been started over meanwhile
+            return;
+        }
+
+        ackOffset = offset;
+        if (ackId < committedId && ackOffset >= segments.get(ackId)) {
+            this.advance();
+        }
+        this.writeState();
+    }
+
+    /**
+     * Delete the fully drained oldest segment.
+     */
+    private void advance() throws IOException {
+        Files.deleteIfExists(this.segment(ackId));
+        segments.remove(ackId);
+        ackId = segments.firstKey();
+        ackOffset = 0;
+        this.writeState();
+    }
+
+    private long pendingBytes() {
+        long pending = -ackOffset;
+        for (var size : segments.tailMap(ackId, true).values()) {
+            pending += size;
+        }
+        return pending;
+    }
+
+    private void recover() throws IOException {
+        var files = new TreeMap<Long, Long>();
+        try (var paths = Files.list(directory)) {
+            for (var path : paths.toList()) {
+                var name = path.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    files.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), Files.size(path));
+                }
+            }
+        }
+
+        var state = directory.resolve("state");
+        if (Files.exists(state)) {
+            var positions = Files.readString(state).strip().split(" ");
+            ackId = Long.parseLong(positions[0]);
+            ackOffset = Long.parseLong(positions[1]);
+            committedId = Long.parseLong(positions[2]);
+            committedOffset = Long.parseLong(positions[3]);
+        } else if (!files.isEmpty()) {
+            ackId = files.firstKey();
+            committedId = files.lastKey();
+            committedOffset = files.lastEntry().getValue();
+        }
+
+        // a crash may have left segments already drained or appended but not committed
+        for (var file : files.entrySet()) {
+            if (file.getKey() < ackId || file.getKey() > committedId) {
+                Files.deleteIfExists(this.segment(file.getKey()));
+            } else if (file.getKey() < committedId) {
+                segments.put(file.getKey(), file.getValue());
+            }
+        }
+
+        segments.put(committedId, committedOffset);
+        activeId = committedId;
+        this.open(committedId, Math.min(committedOffset, files.getOrDefault(committedId, 0L)));
+        if (activeSize < committedOffset) {
+            throw new IOException("The spool segment " + this.segment(committedId) + " is shorter than its committed size " + committedOffset);
+        }
+
+        if (!segments.containsKey(ackId)) {
+            ackId = segments.firstKey();
+            ackOffset = 0;
+        }
+        this.writeState();
+
+        var pending = this.pendingBytes();
+        if (pending > 0) {
+            logger.info("Recovered the spool {} with {} bytes waiting to be written", directory, pending);
+        }
+    }
+
+    private void writeState() throws IOException {
+        var temporary = directory.resolve("state.tmp");
+        Files.writeString(temporary, ackId + " " + ackOffset + " " + committedId + " " + committedOffset + "\n");
+        Files.move(temporary, directory.resolve("state"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segment(long id) {
+        return directory.resolve("%020d%s".formatted(id, SEGMENT_SUFFIX));
+    }
+
+    @FunctionalInterface
+    interface Lines {
+        /**
+         * @return the next line, {@code null} at the end
+         */
+        String next() throws Exception;
+    }
+
+    /**
+     * Where and how the spool is drained, the bucket and organization being the ones of the client key.
+     */
+    record Target(InfluxDBClientPool.Key key, int batchSize, long maxBatchBytes, int maxRetries) {
+    }
+
+    record Appended(int points, long bytes) {
+    }
+
+    /**
+     * @param pendingBytes the size of the lines waiting to be written
+     * @param segments the number of segment files
+     * @param drainedPoints the points written since the previous stats
+     * @param drainDuration the time spent writing them
+     */
+    record Stats(long pendingBytes, int segments, long drainedPoints, Duration drainDuration) {
+    }
+
+    private record Chunk(long id, long start, long limit) {
+    }
+}
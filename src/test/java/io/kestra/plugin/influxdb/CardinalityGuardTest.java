@@ -0,0 +1,71 @@
+package io.kestra.plugin.influxdb;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CardinalityGuardTest {
+    @Test
+    void estimate() {
+        var guard = new CardinalityGuard(null, null, CardinalityLimits.Action.FAIL, NOPLogger.NOP_LOGGER);
+
+        for (int i = 0; i < 200_000; i++) {
+            // the same series with the tags in another order
+            var line = i % 2 == 0 ?
+                "cpu,host=server" + (i % 50_000) + ",region=region" + (i % 5) + " value=1 " + i :
+                "cpu,region=region" + (i % 5) + ",host=server" + (i % 50_000) + " value=1 " + i;
+            guard.observe(line);
+        }
+
+        assertThat((double) guard.series(), closeTo(50_000, 50_000 * 0.03));
+        assertThat(guard.tags().keySet(), contains("host", "region"));
+        assertThat((double) guard.tags().get("host"), closeTo(50_000, 50_000 * 0.05));
+        assertThat(guard.tags().get("region"), is(5L));
+    }
+
+    @Test
+    void failOnTooManyTagValues() {
+        var guard = new CardinalityGuard(null, 1000L, CardinalityLimits.Action.FAIL, NOPLogger.NOP_LOGGER);
+
+        for (int i = 0; i < 500; i++) {
+            guard.observe("cpu,host=server" + i + " value=1 " + i);
+        }
+        guard.check();
+
+        var exception = assertThrows(IllegalArgumentException.class, () -> {
+            for (int i = 0; i < 10_000; i++) {
+                guard.observe("cpu,host=server1,request=" + UUID.randomUUID() + " value=1 " + i);
+            }
+        });
+
+        assertThat(exception.getMessage(), containsString("'request'"));
+        assertThat(exception.getMessage(), containsString("after 2000 lines"));
+    }
+
+    @Test
+    void warnOnTooManySeries() {
+        var guard = new CardinalityGuard(100L, null, CardinalityLimits.Action.WARN, NOPLogger.NOP_LOGGER);
+
+        for (int i = 0; i < 10_000; i++) {
+            guard.observe("cpu,host=server" + i + " value=1 " + i);
+        }
+        guard.check();
+
+        assertThat(guard.series(), greaterThan(100L));
+    }
+
+    @Test
+    void ignoreInvalidLines() {
+        var guard = new CardinalityGuard(null, null, CardinalityLimits.Action.FAIL, NOPLogger.NOP_LOGGER);
+
+        guard.observe("cpu");
+        guard.observe("cpu,host=server1 value=1");
+
+        assertThat(guard.series(), is(1L));
+    }
+}
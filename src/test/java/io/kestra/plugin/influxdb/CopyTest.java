@@ -0,0 +1,167 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.query.FluxRecord;
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.runners.RunContextFactory;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@KestraTest
+class CopyTest {
+    private static final String QUERY = "from(bucket: \"my-bucket\") |> range(start: 0)";
+
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    @Test
+    void copy() throws Exception {
+        try (
+            var source = new InfluxDBStandIn().rows(2500).hosts(3);
+            var target = new InfluxDBStandIn().keepWrites(true)
+        ) {
+            var task = Copy.builder()
+                .url(source.url())
+                .query(new Property<>(QUERY))
+                .target(CopyTarget.builder().url(target.url()).org("other-org").bucket("rollups").build())
+                .batchSize(Property.of(1000))
+                .queueSize(Property.of(1))
+                .build();
+
+            var output = task.run(runContextFactory.of(Map.of()));
+
+            assertThat(output.getRecords(), is(2500L));
+            assertThat(output.getCount(), is(2500L));
+            assertThat(output.getBatches(), is(3));
+            assertThat(output.getPointsPerSecond(), greaterThan(0.0));
+            assertThat(source.queries(), is(1L));
+            assertThat(target.points(), is(2500L));
+
+            var lines = target.bodies().stream().flatMap(String::lines).toList();
+            assertThat(lines.getFirst(), is("cpu,host=server0 value=0.5 1422568500000000000"));
+            assertThat(lines.getLast(), is("cpu,host=server2 value=2499.5 1422568500000002499"));
+        }
+    }
+
+    @Test
+    void rename() throws Exception {
+        try (
+            var source = new InfluxDBStandIn().rows(10).hosts(2);
+            var target = new InfluxDBStandIn().keepWrites(true)
+        ) {
+            var task = Copy.builder()
+                .url(source.url())
+                .query(new Property<>(QUERY))
+                .target(CopyTarget.builder().url(target.url()).bucket("rollups").build())
+                .measurement(new Property<>("cpu 1h"))
+                .tags(Property.of(Map.of("host", "server")))
+                .fields(Property.of(Map.of("value", "mean")))
+                .build();
+
+            task.run(runContextFactory.of(Map.of()));
+
+            var lines = target.bodies().stream().flatMap(String::lines).toList();
+            assertThat(lines, hasSize(10));
+            assertThat(lines.getFirst(), is("cpu\\ 1h,server=server0 mean=0.5 1422568500000000000"));
+        }
+    }
+
+    @Test
+    void targetFailure() throws Exception {
+        try (
+            var source = new InfluxDBStandIn().rows(5000);
+            var target = new InfluxDBStandIn().failEvery(2)
+        ) {
+            var task = Copy.builder()
+                .url(source.url())
+                .query(new Property<>(QUERY))
+                .target(CopyTarget.builder().url(target.url()).bucket("rollups").build())
+                .batchSize(Property.of(100))
+                .build();
+
+            assertThrows(Exception.class, () -> task.run(runContextFactory.of(Map.of())));
+
+            // the query stops reading once a write failed
+            assertThat(target.writes(), is(1L));
+            assertThat(target.failed(), is(1L));
+        }
+    }
+
+    @Test
+    void killed() throws Exception {
+        try (
+            var source = new InfluxDBStandIn().rows(1_000_000);
+            var target = new InfluxDBStandIn().latency(Duration.ofMillis(500))
+        ) {
+            var task = Copy.builder()
+                .url(source.url())
+                .query(new Property<>(QUERY))
+                .target(CopyTarget.builder().url(target.url()).bucket("rollups").build())
+                .batchSize(Property.of(100))
+                .queueSize(Property.of(1))
+                .build();
+
+            var failure = new AtomicReference<Throwable>();
+            var run = Thread.ofVirtual().start(() -> {
+                try {
+                    task.run(runContextFactory.of(Map.of()));
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+
+            // kill the run while the query waits for the slow writes
+            while (source.queries() == 0) {
+                Thread.sleep(20);
+            }
+            Thread.sleep(300);
+            run.interrupt();
+
+            assertThat(run.join(Duration.ofSeconds(10)), is(true));
+            assertThat(failure.get(), instanceOf(InterruptedException.class));
+
+            // the query stops instead of staying blocked on the full queue
+            var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (source.cancelled() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(source.cancelled(), is(1L));
+        }
+    }
+
+    @Test
+    void convertRecords() {
+        var record = new FluxRecord(0);
+        record.getValues().put("result", "_result");
+        record.getValues().put("table", 0L);
+        record.getValues().put("_start", Instant.EPOCH);
+        record.getValues().put("_stop", Instant.EPOCH);
+        record.getValues().put("_time", Instant.ofEpochSecond(1, 5));
+        record.getValues().put("_value", "say \"hi\"");
+        record.getValues().put("_field", "note");
+        record.getValues().put("_measurement", "events");
+        record.getValues().put("region", "eu,west");
+        record.getValues().put("host", "");
+        record.getRow().addAll(record.getValues().values());
+
+        var converter = new FluxRecordLineConverter(null, Map.of(), Map.of());
+        assertThat(converter.convert(record), is("events,region=eu\\,west note=\"say \\\"hi\\\"\" 1000000005"));
+
+        var pivoted = new FluxRecord(0);
+        pivoted.getValues().put("_time", Instant.EPOCH);
+        pivoted.getValues().put("usage", 0.5);
+        pivoted.getRow().addAll(pivoted.getValues().values());
+
+        var exception = assertThrows(IllegalArgumentException.class, () -> converter.convert(pivoted));
+        assertThat(exception.getMessage(), containsString("pivot()"));
+    }
+}
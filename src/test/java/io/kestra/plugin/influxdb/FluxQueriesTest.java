@@ -0,0 +1,119 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.models.tasks.common.FetchType;
+import io.kestra.core.runners.RunContextFactory;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@KestraTest
+class FluxQueriesTest {
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    private static Map<String, String> queries(int size) {
+        var queries = new LinkedHashMap<String, String>();
+        for (int i = 0; i < size; i++) {
+            queries.put("query" + i, "from(bucket: \"my-bucket\") |> range(start: -" + (i + 1) + "h)");
+        }
+        return queries;
+    }
+
+    @Test
+    void concurrent() throws Exception {
+        try (var standIn = new InfluxDBStandIn().rows(10).hosts(2).latency(Duration.ofMillis(300))) {
+            var task = FluxQueries.builder()
+                .url(standIn.url())
+                .queries(Property.of(queries(6)))
+                .fetchType(Property.of(FetchType.FETCH_ONE))
+                .parallelism(Property.of(6))
+                .build();
+
+            var started = System.nanoTime();
+            var output = task.run(runContextFactory.of(Map.of()));
+            var elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+            assertThat(standIn.queries(), is(6L));
+            // executed one after the other, the queries would take at least 6 times the latency
+            assertThat(elapsed, lessThan(Duration.ofMillis(6 * 300)));
+
+            assertThat(output.getQueries().keySet(), contains("query0", "query1", "query2", "query3", "query4", "query5"));
+            assertThat(output.getCount(), is(6));
+            for (var result : output.getQueries().values()) {
+                assertThat(result.getCount(), is(1));
+                assertThat(result.getRow().get("host"), is("server0"));
+                assertThat(result.getDuration(), greaterThanOrEqualTo(Duration.ofMillis(300)));
+            }
+        }
+    }
+
+    @Test
+    void store() throws Exception {
+        try (var standIn = new InfluxDBStandIn().rows(25)) {
+            var runContext = runContextFactory.of(Map.of());
+            var task = FluxQueries.builder()
+                .url(standIn.url())
+                .queries(Property.of(queries(3)))
+                .fetchType(Property.of(FetchType.STORE))
+                .parallelism(Property.of(2))
+                .build();
+
+            var output = task.run(runContext);
+
+            assertThat(output.getCount(), is(75));
+            for (var result : output.getQueries().values()) {
+                assertThat(result.getCount(), is(25));
+                assertThat(result.getRows(), is(nullValue()));
+                try (var stream = runContext.storage().getFile(URI.create(result.getUri()))) {
+                    assertThat(stream.readAllBytes().length, greaterThan(0));
+                }
+            }
+        }
+    }
+
+    @Test
+    void failure() throws Exception {
+        try (var standIn = new InfluxDBStandIn().rows(10).failEvery(3)) {
+            var task = FluxQueries.builder()
+                .url(standIn.url())
+                .queries(Property.of(queries(4)))
+                .parallelism(Property.of(1))
+                .build();
+
+            var exception = assertThrows(Exception.class, () -> task.run(runContextFactory.of(Map.of())));
+
+            assertThat(exception.getMessage(), both(startsWith("Query 'query")).and(containsString("' failed: ")));
+        }
+    }
+
+    @Test
+    void failureCancels() throws Exception {
+        try (var standIn = new InfluxDBStandIn().rows(5_000_000).failEvery(2)) {
+            var task = FluxQueries.builder()
+                .url(standIn.url())
+                .queries(Property.of(queries(2)))
+                .fetchType(Property.of(FetchType.NONE))
+                .parallelism(Property.of(2))
+                .build();
+
+            assertThrows(Exception.class, () -> task.run(runContextFactory.of(Map.of())));
+
+            // the other query is cancelled rather than streamed to the end in the background
+            var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (standIn.cancelled() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(standIn.cancelled(), is(1L));
+        }
+    }
+}
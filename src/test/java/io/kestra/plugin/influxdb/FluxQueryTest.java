@@ -1,16 +1,25 @@
 package io.kestra.plugin.influxdb;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import io.kestra.core.junit.annotations.KestraTest;
 import io.kestra.core.models.property.Property;
 import io.kestra.core.models.tasks.common.FetchType;
 import io.kestra.core.runners.RunContextFactory;
+import io.kestra.core.serializers.FileSerde;
 import jakarta.inject.Inject;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -129,5 +138,194 @@ class FluxQueryTest {
         assertThat(runOutput.getRow(), is(nullValue()));
         assertThat(runOutput.getRows(), is(nullValue()));
         assertThat(runOutput.getUri(), is(notNullValue()));
+        assertThat(runContext.metrics().stream().map(metric -> metric.getName()).toList(), hasItems("rows", "query.duration", "upload.duration"));
+    }
+
+    @Test
+    void runStoreCsv() throws Exception {
+        var query = """
+            from(bucket: "my-bucket")
+              |> range(start: 2015-01-29T21:55:43Z, stop: 2015-01-29T21:55:44Z)
+              |> filter(fn: (r) => r["_measurement"] == "cpu")
+            """;
+
+        var runContext = runContextFactory.of(Map.of());
+
+        var task = FluxQuery.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .query(new Property<>(query))
+            .fetchType(Property.of(FetchType.STORE))
+            .format(Property.of(FluxQuery.Format.CSV))
+            .build();
+
+        var runOutput = task.run(runContext);
+
+        assertThat(runOutput.getCount(), is(3));
+        assertThat(runOutput.getUri(), endsWith(".csv"));
+
+        try (var stream = runContext.storage().getFile(URI.create(runOutput.getUri()))) {
+            var content = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            assertThat(content, startsWith("#datatype"));
+            assertThat(content, containsString("server02"));
+        }
+    }
+
+    @Test
+    void runFetchSharded() throws Exception {
+        var query = """
+            from(bucket: "my-bucket")
+              |> range(start: {{ shard.start }}, stop: {{ shard.stop }})
+              |> filter(fn: (r) => r["_measurement"] == "cpu")
+            """;
+
+        var runContext = runContextFactory.of(Map.of());
+
+        var task = FluxQuery.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .query(new Property<>(query))
+            .fetchType(Property.of(FetchType.FETCH))
+            .shard(FluxQuery.Shard.builder()
+                .start(Property.of("2015-01-29T21:55:00Z"))
+                .stop(Property.of("2015-01-29T21:56:00Z"))
+                .window(Property.of(Duration.ofSeconds(10)))
+                .build()
+            )
+            .build();
+
+        var runOutput = task.run(runContext);
+
+        assertThat(runOutput.getCount(), is(3));
+        assertThat(runOutput.getRows(), hasSize(3));
+        assertThat(runOutput.getUri(), is(nullValue()));
+    }
+
+    @Test
+    void runFetchOverLimit() throws Exception {
+        var query = """
+            from(bucket: "my-bucket")
+              |> range(start: 2015-01-29T21:55:00Z, stop: 2015-01-29T21:56:00Z)
+              |> filter(fn: (r) => r["_measurement"] == "cpu")
+            """;
+
+        var runContext = runContextFactory.of(Map.of());
+
+        var task = FluxQuery.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .query(new Property<>(query))
+            .fetchType(Property.of(FetchType.FETCH))
+            .maxFetchRows(Property.of(2))
+            .build();
+
+        var runOutput = task.run(runContext);
+
+        assertThat(runOutput.getCount(), is(3));
+        assertThat(runOutput.getRows(), is(nullValue()));
+        assertThat(runOutput.getUri(), is(notNullValue()));
+
+        try (var stream = runContext.storage().getFile(URI.create(runOutput.getUri()))) {
+            var content = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            assertThat(content, containsString("server01"));
+            assertThat(content, containsString("server02"));
+        }
+
+        var underLimit = FluxQuery.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .query(new Property<>(query))
+            .fetchType(Property.of(FetchType.FETCH))
+            .maxFetchRows(Property.of(3))
+            .maxFetchBytes(Property.of(1024L * 1024))
+            .build()
+            .run(runContextFactory.of(Map.of()));
+
+        assertThat(underLimit.getRows(), hasSize(3));
+        assertThat(underLimit.getUri(), is(nullValue()));
+    }
+
+    @Test
+    void runFetchShardedOverLimit() throws Exception {
+        // the stand-in returns 2 rows to each of the 3 shards
+        try (var standIn = new InfluxDBStandIn().rows(2)) {
+            var runContext = runContextFactory.of(Map.of());
+
+            var task = FluxQuery.builder()
+                .url(standIn.url())
+                .query(new Property<>("from(bucket: \"my-bucket\") |> range(start: {{ shard.start }}, stop: {{ shard.stop }})"))
+                .fetchType(Property.of(FetchType.FETCH))
+                .maxFetchRows(Property.of(2))
+                .shard(FluxQuery.Shard.builder()
+                    .start(Property.of("2015-01-29T21:55:00Z"))
+                    .stop(Property.of("2015-01-29T21:55:30Z"))
+                    .window(Property.of(Duration.ofSeconds(10)))
+                    .build()
+                )
+                .build();
+
+            var runOutput = task.run(runContext);
+
+            // every shard is kept in memory, but not all of them together
+            assertThat(standIn.queries(), is(3L));
+            assertThat(runOutput.getCount(), is(6));
+            assertThat(runOutput.getRows(), is(nullValue()));
+            assertThat(runOutput.getUri(), is(notNullValue()));
+
+            try (var reader = new BufferedReader(new InputStreamReader(runContext.storage().getFile(URI.create(runOutput.getUri())), StandardCharsets.UTF_8))) {
+                var rows = FileSerde.readAll(reader, new TypeReference<Map<String, Object>>() {}).collectList().block();
+                assertThat(rows, hasSize(6));
+                assertThat(rows.stream().map(row -> row.get("host")).toList(), contains("server0", "server1", "server0", "server1", "server0", "server1"));
+            }
+        }
+    }
+
+    @Test
+    void runKilled() throws Exception {
+        try (var standIn = new InfluxDBStandIn().rows(10_000_000)) {
+            var task = FluxQuery.builder()
+                .url(standIn.url())
+                .query(new Property<>("from(bucket: \"my-bucket\") |> range(start: -1h)"))
+                .fetchType(Property.of(FetchType.FETCH))
+                .build();
+
+            var failure = new AtomicReference<Throwable>();
+            var run = Thread.ofVirtual().start(() -> {
+                try {
+                    task.run(runContextFactory.of(Map.of()));
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+
+            // kill the run while the rows are streamed
+            await(() -> standIn.queries() == 1);
+            Thread.sleep(200);
+            run.interrupt();
+
+            assertThat(run.join(Duration.ofSeconds(10)), is(true));
+            assertThat(failure.get(), instanceOf(InterruptedException.class));
+
+            // the query is cancelled instead of being streamed to the end in the background
+            await(() -> standIn.cancelled() == 1);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met in time");
+            }
+            Thread.sleep(20);
+        }
     }
 }
@@ -0,0 +1,91 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.query.FluxRecord;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class FluxRecordConverterTest {
+    private static FluxRecord record(int table, Map<String, Object> values) {
+        var record = new FluxRecord(table);
+        record.getValues().putAll(values);
+        record.getRow().addAll(values.values());
+        return record;
+    }
+
+    private static Map<String, Object> values(Object... keyValues) {
+        var values = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            values.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return values;
+    }
+
+    @Test
+    void convert() {
+        var converter = new FluxRecordConverter(null);
+        var time = Instant.parse("2015-01-29T21:55:43Z");
+
+        var row = converter.convert(record(0, values("result", "_result", "table", 0L, "_time", time, "_value", 1.5f, "count", 3, "host", null)));
+
+        assertThat(row, is(Map.of("result", "_result", "table", 0L, "_time", time, "_value", 1.5d, "count", 3L)));
+        assertThat(row.get("host"), is(nullValue()));
+        assertThat(row.containsKey("host"), is(false));
+    }
+
+    @Test
+    void planPerTable() {
+        var converter = new FluxRecordConverter(null);
+
+        converter.convert(record(0, values("result", "_result", "table", 0L, "_value", 1.0)));
+        var row = converter.convert(record(1, values("result", "_result", "table", 1L, "_field", "free", "_value", 2L)));
+
+        assertThat(row, is(Map.of("result", "_result", "table", 1L, "_field", "free", "_value", 2L)));
+    }
+
+    @Test
+    void projection() {
+        var converter = new FluxRecordConverter(List.of("_time", "_value"));
+        var time = Instant.parse("2015-01-29T21:55:43Z");
+
+        var row = converter.convert(record(0, values("result", "_result", "table", 0L, "_start", time, "_time", time, "_value", 0.64)));
+
+        assertThat(row, is(Map.of("_time", time, "_value", 0.64)));
+        assertThat(row.keySet(), contains("_time", "_value"));
+    }
+
+    @Test
+    void internRepeatedValues() {
+        var converter = new FluxRecordConverter(null, true);
+        var start = Instant.parse("2015-01-29T21:55:00Z");
+
+        // new String instances, as the client parses each cell into its own string
+        var first = converter.convert(record(0, values(new String("_measurement"), new String("cpu"), "host", new String("server01"), "_start", start, "_value", 1.0)));
+        var bytes = converter.estimatedBytes();
+        var second = converter.convert(record(1, values(new String("_measurement"), new String("cpu"), "host", new String("server01"), "_start", Instant.parse("2015-01-29T21:55:00Z"), "_value", 2.0)));
+
+        assertThat(second.keySet().iterator().next(), is(sameInstance(first.keySet().iterator().next())));
+        assertThat(second.get("_measurement"), is(sameInstance(first.get("_measurement"))));
+        assertThat(second.get("host"), is(sameInstance(first.get("host"))));
+        // only the row itself and its new value are counted for the second row
+        assertThat(converter.estimatedBytes() - bytes, lessThan(bytes / 2));
+    }
+
+    @Test
+    void notRetained() {
+        var converter = new FluxRecordConverter(null);
+
+        var first = converter.convert(record(0, values("_measurement", new String("cpu"), "_value", 1.0)));
+        var second = converter.convert(record(0, values("_measurement", new String("cpu"), "_value", 2.0)));
+
+        // rows written out one by one are neither interned nor counted
+        assertThat(second.get("_measurement"), is(not(sameInstance(first.get("_measurement")))));
+        assertThat(converter.estimatedBytes(), is(0L));
+    }
+}
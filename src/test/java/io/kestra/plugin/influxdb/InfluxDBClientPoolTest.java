@@ -0,0 +1,66 @@
+package io.kestra.plugin.influxdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class InfluxDBClientPoolTest {
+    private static final InfluxDBClientPool.Key KEY = new InfluxDBClientPool.Key("http://localhost:8086", "my-token", "my-org", "my-bucket");
+
+    @Test
+    void reuseClient() {
+        var pool = new InfluxDBClientPool(Duration.ofMinutes(5));
+
+        try (var first = pool.acquire(KEY); var second = pool.acquire(KEY)) {
+            assertThat(second.client(), sameInstance(first.client()));
+        }
+
+        try (var other = pool.acquire(new InfluxDBClientPool.Key("http://localhost:8086", "my-token", "other-org", "my-bucket"))) {
+            assertThat(other.client(), is(notNullValue()));
+            assertThat(pool.size(), is(2));
+        }
+
+        pool.closeAll();
+        assertThat(pool.size(), is(0));
+    }
+
+    @Test
+    void separateClientPerTransport() {
+        var pool = new InfluxDBClientPool(Duration.ofMinutes(5));
+        var gzip = new InfluxDBClientPool.Transport(true, Duration.ofSeconds(10), Duration.ofSeconds(60), Duration.ofSeconds(10), 5, Duration.ofMinutes(5), 64);
+
+        try (
+            var plain = pool.acquire(KEY);
+            var compressed = pool.acquire(new InfluxDBClientPool.Key("http://localhost:8086", "my-token", "my-org", "my-bucket", gzip))
+        ) {
+            assertThat(compressed.client(), not(sameInstance(plain.client())));
+            assertThat(compressed.client().isGzipEnabled(), is(true));
+            assertThat(plain.client().isGzipEnabled(), is(false));
+        }
+
+        pool.closeAll();
+    }
+
+    @Test
+    void evictIdleOnlyWhenReleased() {
+        var pool = new InfluxDBClientPool(Duration.ZERO);
+
+        var lease = pool.acquire(KEY);
+        pool.evictIdle();
+        assertThat(pool.size(), is(1));
+
+        lease.close();
+        // closing twice must not release the client twice
+        lease.close();
+        pool.evictIdle();
+        assertThat(pool.size(), is(0));
+    }
+
+    @Test
+    void keyHidesToken() {
+        assertThat(KEY.toString(), not(containsString("my-token")));
+    }
+}
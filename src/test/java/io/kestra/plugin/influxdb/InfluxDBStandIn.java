@@ -0,0 +1,335 @@
+package io.kestra.plugin.influxdb;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An in-process stand-in for the {@code /api/v2/write} and {@code /api/v2/query} endpoints of InfluxDB, so the tasks
+ * can be run end to end without a server.
+ * <p>
+ * Writes are decompressed when gzipped and only counted, unless {@link #keepWrites(boolean)} is set. Queries return
+ * {@link #rows(int)} rows of annotated CSV, split in one table per host, whatever the query. Latency, 429 and 500
+ * responses can be injected on every Nth request so the runs stay repeatable.
+ */
+class InfluxDBStandIn implements AutoCloseable {
+    private static final Instant START = Instant.parse("2015-01-29T21:55:00Z");
+    private static final byte[] HEADER = (
+        "#datatype,string,long,dateTime:RFC3339,dateTime:RFC3339,dateTime:RFC3339,double,string,string,string\r\n" +
+        "#group,false,false,true,true,false,false,true,true,true\r\n" +
+        "#default,_result,,,,,,,,\r\n" +
+        ",result,table,_start,_stop,_time,_value,_field,_measurement,host\r\n"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile Duration latency = Duration.ZERO;
+    private volatile int throttleEvery;
+    private volatile Duration retryAfter;
+    private volatile int failEvery;
+    private volatile int rows;
+    private volatile int hosts = 10;
+    private volatile boolean keepWrites;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong points = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+
+    InfluxDBStandIn() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/api/v2/write", exchange -> this.handle(exchange, this::write));
+        this.server.createContext("/api/v2/query", exchange -> this.handle(exchange, this::query));
+        this.server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Delay every response.
+     */
+    InfluxDBStandIn latency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Answer every Nth request with a 429, with a {@code Retry-After} header if {@code retryAfter} is set.
+     */
+    InfluxDBStandIn throttleEvery(int every, Duration retryAfter) {
+        this.throttleEvery = every;
+        this.retryAfter = retryAfter;
+        return this;
+    }
+
+    /**
+     * Answer every Nth request with a 500.
+     */
+    InfluxDBStandIn failEvery(int every) {
+        this.failEvery = every;
+        return this;
+    }
+
+    /**
+     * Number of rows returned by each query.
+     */
+    InfluxDBStandIn rows(int rows) {
+        this.rows = rows;
+        return this;
+    }
+
+    /**
+     * Number of distinct hosts, and tables, of the rows returned by each query.
+     */
+    InfluxDBStandIn hosts(int hosts) {
+        this.hosts = hosts;
+        return this;
+    }
+
+    /**
+     * Keep the decompressed body of the accepted writes, for the tests that check what was written.
+     */
+    InfluxDBStandIn keepWrites(boolean keepWrites) {
+        this.keepWrites = keepWrites;
+        return this;
+    }
+
+    /**
+     * @return the number of accepted write requests
+     */
+    long writes() {
+        return writes.get();
+    }
+
+    /**
+     * @return the number of points of the accepted write requests
+     */
+    long points() {
+        return points.get();
+    }
+
+    /**
+     * @return the number of bytes of the accepted write bodies as sent, compressed or not
+     */
+    long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return the number of answered queries
+     */
+    long queries() {
+        return queries.get();
+    }
+
+    /**
+     * @return the number of queries the client stopped reading before the end
+     */
+    long cancelled() {
+        return cancelled.get();
+    }
+
+    long throttled() {
+        return throttled.get();
+    }
+
+    long failed() {
+        return failed.get();
+    }
+
+    List<String> bodies() {
+        return bodies;
+    }
+
+    /**
+     * Reset the counters and the kept writes, the settings are kept.
+     */
+    void reset() {
+        List.of(requests, writes, points, bytes, queries, cancelled, throttled, failed).forEach(counter -> counter.set(0));
+        bodies.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try (exchange) {
+            var request = requests.incrementAndGet();
+
+            if (!latency.isZero()) {
+                Thread.sleep(latency.toMillis());
+            }
+
+            if (throttleEvery > 0 && request % throttleEvery == 0) {
+                exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+                throttled.incrementAndGet();
+                if (retryAfter != null) {
+                    exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfter.toSeconds()));
+                }
+                error(exchange, 429, "too many requests", "injected throttling");
+                return;
+            }
+
+            if (failEvery > 0 && request % failEvery == 0) {
+                exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+                failed.incrementAndGet();
+                error(exchange, 500, "internal error", "injected failure");
+                return;
+            }
+
+            handler.handle(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the client went away, typically a cancelled query
+        }
+    }
+
+    private void write(HttpExchange exchange) throws IOException {
+        var compressed = new CountingInputStream(exchange.getRequestBody(), bytes);
+        InputStream body = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))
+            ? new GZIPInputStream(compressed, 64 * 1024)
+            : compressed;
+
+        long count = 0;
+        if (keepWrites) {
+            var text = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            bodies.add(text);
+            count = text.lines().filter(line -> !line.isBlank()).count();
+        } else {
+            // count the non empty lines without keeping the body
+            var buffer = new byte[64 * 1024];
+            var pending = false;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        count += pending ? 1 : 0;
+                        pending = false;
+                    } else if (buffer[i] != '\r') {
+                        pending = true;
+                    }
+                }
+            }
+            count += pending ? 1 : 0;
+        }
+
+        writes.incrementAndGet();
+        points.addAndGet(count);
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private void query(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        queries.incrementAndGet();
+
+        var gzip = String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")).contains("gzip");
+        exchange.getResponseHeaders().add("Content-Type", "text/csv; charset=utf-8");
+        if (gzip) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, 0);
+
+        OutputStream stream = exchange.getResponseBody();
+        if (gzip) {
+            stream = new GZIPOutputStream(stream, 64 * 1024);
+        }
+
+        try (var output = new BufferedOutputStream(stream, 64 * 1024)) {
+            output.write(HEADER);
+
+            var rows = this.rows;
+            var hosts = Math.max(1, Math.min(this.hosts, rows));
+            var start = START.toString();
+            var stop = START.plusNanos(rows).toString();
+            var line = new StringBuilder(128);
+
+            for (int i = 0; i < rows; i++) {
+                // the rows of a table must be contiguous
+                var table = (int) ((long) i * hosts / Math.max(rows, 1));
+
+                line.setLength(0);
+                line.append(",,").append(table)
+                    .append(',').append(start)
+                    .append(',').append(stop)
+                    .append(',').append(START.plusNanos(i))
+                    .append(',').append(i).append(".5")
+                    .append(",value,cpu,server").append(table)
+                    .append("\r\n");
+                output.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            }
+
+            output.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            cancelled.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private static void error(HttpExchange exchange, int status, String code, String message) throws IOException {
+        var body = ("{\"code\":\"" + code + "\",\"message\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var read = super.read();
+            if (read != -1) {
+                counter.incrementAndGet();
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var read = super.read(b, off, len);
+            if (read > 0) {
+                counter.addAndGet(read);
+            }
+            return read;
+        }
+    }
+}
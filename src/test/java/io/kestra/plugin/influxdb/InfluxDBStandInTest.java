@@ -0,0 +1,103 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.models.tasks.common.FetchType;
+import io.kestra.core.runners.RunContextFactory;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@KestraTest
+class InfluxDBStandInTest {
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    @Test
+    void write() throws Exception {
+        try (var standIn = new InfluxDBStandIn().keepWrites(true)) {
+            var output = write(standIn, lines(25), null).run(runContextFactory.of(Map.of()));
+
+            assertThat(output.getCount(), is(25));
+            assertThat(standIn.writes(), is(3L));
+            assertThat(standIn.points(), is(25L));
+            assertThat(String.join("", standIn.bodies()), containsString("cpu,host=server00 value=0.24 1422568543702900281"));
+        }
+    }
+
+    @Test
+    void writeGzip() throws Exception {
+        try (var standIn = new InfluxDBStandIn()) {
+            var data = lines(1000);
+            var task = write(standIn, data, ClientOptions.builder().gzip(Property.of(true)).build());
+
+            assertThat(task.run(runContextFactory.of(Map.of())).getCount(), is(1000));
+            assertThat(standIn.points(), is(1000L));
+            assertThat(standIn.bytes(), lessThan((long) data.getBytes(StandardCharsets.UTF_8).length));
+        }
+    }
+
+    @Test
+    void writeThrottled() throws Exception {
+        try (var standIn = new InfluxDBStandIn().throttleEvery(2, Duration.ZERO)) {
+            var output = write(standIn, lines(25), null).run(runContextFactory.of(Map.of()));
+
+            assertThat(output.getCount(), is(25));
+            assertThat(standIn.points(), is(25L));
+            assertThat(standIn.throttled(), greaterThan(0L));
+        }
+    }
+
+    @Test
+    void writeFailed() throws Exception {
+        try (var standIn = new InfluxDBStandIn().failEvery(1)) {
+            var task = write(standIn, lines(5), null);
+
+            assertThrows(Exception.class, () -> task.run(runContextFactory.of(Map.of())));
+            assertThat(standIn.points(), is(0L));
+            assertThat(standIn.failed(), greaterThan(0L));
+        }
+    }
+
+    @Test
+    void query() throws Exception {
+        try (var standIn = new InfluxDBStandIn().rows(25).hosts(3)) {
+            var task = FluxQuery.builder()
+                .url(standIn.url())
+                .query(new Property<>("from(bucket: \"my-bucket\") |> range(start: -1h)"))
+                .fetchType(Property.of(FetchType.FETCH))
+                .build();
+
+            var output = task.run(runContextFactory.of(Map.of()));
+
+            assertThat(output.getCount(), is(25));
+            assertThat(output.getRows().stream().map(row -> row.get("host")).collect(Collectors.toSet()), hasSize(3));
+            assertThat(output.getRows().getFirst().get("_value"), is(0.5));
+            assertThat(standIn.queries(), is(1L));
+        }
+    }
+
+    private static Write write(InfluxDBStandIn standIn, String data, ClientOptions options) {
+        return Write.builder()
+            .url(standIn.url())
+            .wireInputMultilineData(new Property<>(data))
+            .batchSize(Property.of(10))
+            .options(options)
+            .build();
+    }
+
+    private static String lines(int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> "cpu,host=server0" + (i % 3) + " value=0." + i + " " + (1422568543702900257L + i))
+            .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,50 @@
+package io.kestra.plugin.influxdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class LineProtocolBatcherTest {
+    @Test
+    void splitByPoints() {
+        var batcher = new LineProtocolBatcher(2, Long.MAX_VALUE, null);
+        var batches = new ArrayList<LineProtocolBatcher.Batch>();
+
+        for (int i = 0; i < 5; i++) {
+            var batch = batcher.add("cpu value=" + i + " " + i);
+            if (batch != null) {
+                batches.add(batch);
+            }
+        }
+        batches.add(batcher.flush());
+
+        assertThat(batches, hasSize(3));
+        assertThat(batches.get(0).lines(), is("cpu value=0 0\ncpu value=1 1\n"));
+        assertThat(batches.get(0).points(), is(2));
+        assertThat(batches.get(0).bytes(), is(28L));
+        assertThat(batches.get(2).points(), is(1));
+        assertThat(batcher.flush(), is(nullValue()));
+    }
+
+    @Test
+    void splitByBytes() {
+        var batcher = new LineProtocolBatcher(1000, 20, null);
+
+        assertThat(batcher.add("cpu value=0 0"), is(nullValue()));
+        var batch = batcher.add("cpu value=1 1");
+
+        assertThat(batch.points(), is(1));
+        assertThat(batcher.flush().lines(), is("cpu value=1 1\n"));
+    }
+
+    @Test
+    void utf8Length() {
+        assertThat(LineProtocolBatcher.utf8Length("cpu"), is(3));
+        assertThat(LineProtocolBatcher.utf8Length("é"), is(2));
+        assertThat(LineProtocolBatcher.utf8Length("€"), is(3));
+        assertThat(LineProtocolBatcher.utf8Length("😀"), is(4));
+    }
+}
@@ -0,0 +1,115 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.client.domain.WritePrecision;
+import io.kestra.core.serializers.FileSerde;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LineProtocolConverterTest {
+    @Test
+    void convert() {
+        var converter = new LineProtocolConverter("cpu load", List.of("region", "host"), List.of("usage", "count", "up", "note", "missing"), "time", WritePrecision.MS);
+
+        var row = new HashMap<String, Object>();
+        row.put("host", "server 1");
+        row.put("region", "eu,west");
+        row.put("usage", 0.5);
+        row.put("count", 42);
+        row.put("up", true);
+        row.put("note", "say \"hi\"");
+        row.put("time", 1_700_000_000_000L);
+
+        var buffer = new StringBuilder();
+        assertThat(converter.convert(row, buffer), is(true));
+        assertThat(buffer.toString(), is(
+            "cpu\\ load,host=server\\ 1,region=eu\\,west usage=0.5,count=42i,up=true,note=\"say \\\"hi\\\"\" 1700000000000000000\n"
+        ));
+
+        // the parser reads back what the converter wrote
+        var point = LineProtocolParser.parse(buffer.toString().strip(), new LineProtocolParser.Point());
+        assertThat(point.measurement(), is("cpu load"));
+        assertThat(point.tagValue(1), is("eu,west"));
+        assertThat(point.fieldValue(3), is("say \"hi\""));
+    }
+
+    @Test
+    void skipNullAndEmptyValues() {
+        var converter = new LineProtocolConverter("cpu", List.of("host", "region"), List.of("usage", "idle"), "time", WritePrecision.NS);
+
+        var row = new HashMap<String, Object>();
+        row.put("host", "");
+        row.put("usage", Double.NaN);
+        row.put("idle", 1.5);
+
+        var buffer = new StringBuilder("previous\n");
+        assertThat(converter.convert(row, buffer), is(true));
+        assertThat(buffer.toString(), is("previous\ncpu idle=1.5\n"));
+
+        row.put("idle", null);
+        assertThat(converter.convert(row, buffer), is(false));
+        assertThat(buffer.toString(), is("previous\ncpu idle=1.5\n"));
+    }
+
+    @Test
+    void allOtherColumnsAsFields() {
+        var converter = new LineProtocolConverter("cpu", List.of("host"), null, "time", WritePrecision.S);
+
+        var row = new LinkedHashMap<String, Object>();
+        row.put("time", "2024-01-01T00:00:00Z");
+        row.put("host", "a");
+        row.put("usage", new BigDecimal("0.25"));
+        row.put("day", LocalDate.of(2024, 1, 1));
+
+        var buffer = new StringBuilder();
+        converter.convert(row, buffer);
+        assertThat(buffer.toString(), is("cpu,host=a usage=0.25,day=\"2024-01-01\" 1704067200000000000\n"));
+    }
+
+    @Test
+    void failOnNewLine() {
+        var converter = new LineProtocolConverter("cpu", List.of("host"), List.of("usage"), null, WritePrecision.NS);
+
+        var exception = assertThrows(
+            IllegalArgumentException.class,
+            () -> converter.convert(Map.of("host", "a\nb", "usage", 1), new StringBuilder())
+        );
+
+        assertThat(exception.getMessage(), containsString("'host'"));
+    }
+
+    @Test
+    void readIon() throws Exception {
+        var ion = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            FileSerde.write(ion, Map.of("host", "server" + i, "usage", i * 0.5, "time", Instant.ofEpochSecond(i)));
+        }
+        FileSerde.write(ion, Map.of("host", "server3"));
+
+        var converter = new LineProtocolConverter("cpu", List.of("host"), List.of("usage"), "time", WritePrecision.NS);
+        try (var reader = new LineNumberReader(new RecordLineReader(
+            new StringReader(ion.toString(StandardCharsets.UTF_8)), converter, NOPLogger.NOP_LOGGER
+        ))) {
+            assertThat(reader.lines().toList(), is(List.of(
+                "cpu,host=server0 usage=0.0 0",
+                "cpu,host=server1 usage=0.5 1000000000",
+                "cpu,host=server2 usage=1.0 2000000000"
+            )));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.kestra.plugin.influxdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LineProtocolParserTest {
+    @Test
+    void parse() {
+        var measurement = Write.Measurement.fromWireLine("cpu,host=server01,region=us_west value=0.64 1422568543702900257");
+
+        assertThat(measurement.name(), is("cpu"));
+        assertThat(measurement.tags(), is(Map.of("host", "server01", "region", "us_west")));
+        assertThat(measurement.fields(), is(Map.of("value", 0.64)));
+        assertThat(measurement.timestamp(), is(1422568543702900257L));
+    }
+
+    @Test
+    void fieldTypes() {
+        var measurement = Write.Measurement.fromWireLine(
+            "m float=1,exp=-1.5e3,int=-42i,uint=18446744073709551615u,t=true,f=F,string=\"hello, world\""
+        );
+
+        assertThat(measurement.fields().get("float"), is(1.0));
+        assertThat(measurement.fields().get("exp"), is(-1500.0));
+        assertThat(measurement.fields().get("int"), is(-42L));
+        assertThat(measurement.fields().get("uint"), is(new BigInteger("18446744073709551615")));
+        assertThat(measurement.fields().get("t"), is(true));
+        assertThat(measurement.fields().get("f"), is(false));
+        assertThat(measurement.fields().get("string"), is("hello, world"));
+        assertThat(measurement.timestamp(), is(nullValue()));
+    }
+
+    @Test
+    void escapes() {
+        var measurement = Write.Measurement.fromWireLine(
+            "my\\ measurement,tag\\ key=tag\\,value,other\\=key=v field\\ key=\"a \\\"quoted\\\" \\\\ string\" -1"
+        );
+
+        assertThat(measurement.name(), is("my measurement"));
+        assertThat(measurement.tags(), is(Map.of("tag key", "tag,value", "other=key", "v")));
+        assertThat(measurement.fields(), is(Map.of("field key", "a \"quoted\" \\ string")));
+        assertThat(measurement.timestamp(), is(-1L));
+    }
+
+    @Test
+    void reusePoint() {
+        var point = new LineProtocolParser.Point();
+
+        LineProtocolParser.parse("a,t=1 x=1i,y=2i 1", point);
+        assertThat(point.tagCount(), is(1));
+        assertThat(point.fieldCount(), is(2));
+
+        LineProtocolParser.parse("b y=1.5", point);
+        assertThat(point.measurement(), is("b"));
+        assertThat(point.tagCount(), is(0));
+        assertThat(point.fieldCount(), is(1));
+        assertThat(point.fieldType(0), is(LineProtocolParser.FieldType.FLOAT));
+        assertThat(point.doubleValue(0), is(1.5));
+        assertThat(point.hasTimestamp(), is(false));
+    }
+
+    @Test
+    void fromWireLines() {
+        var measurements = Write.Measurement.fromWireLines("""
+            # a comment
+            cpu,host=server01 value=0.64 1422568543702900257
+
+            mem,host=server01 free=1024i,total=4096i 1422568543702900260
+            """);
+
+        assertThat(measurements, hasSize(2));
+        assertThat(measurements.get(1).fields(), is(Map.of("free", 1024L, "total", 4096L)));
+    }
+
+    @Test
+    void invalid() {
+        for (var line : new String[]{
+            "cpu",
+            "cpu,host value=1",
+            "cpu,host= value=1",
+            "cpu value=",
+            "cpu value=\"unterminated",
+            "cpu value=abc",
+            "cpu value=1x",
+            "cpu value=NaN",
+            "cpu value=1i2",
+            "cpu value=1 notanumber",
+            "cpu value=1 1 2",
+            "cpu value=99999999999999999999i",
+            ",tag=a value=1"
+        }) {
+            assertThrows(IllegalArgumentException.class, () -> Write.Measurement.fromWireLine(line), line);
+        }
+    }
+}
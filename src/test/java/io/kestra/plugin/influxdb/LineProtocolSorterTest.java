@@ -0,0 +1,119 @@
+package io.kestra.plugin.influxdb;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LineProtocolSorterTest {
+    private static final String INPUT = """
+        # comment
+        mem,host=a free=1 2
+        cpu,host=b value=1 1
+        cpu,host=a value=2 2
+
+        cpu,host=a value=1 1
+        cpu,host=a value=3
+        cpu,host=a value=4,idle=true 2
+        """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sortBySeriesAndTime() throws Exception {
+        var writer = new StringWriter();
+        var result = new LineProtocolSorter(Write.Deduplicate.NONE, 100, directory).sort(reader(INPUT), writer);
+
+        assertThat(result.lines(), is(6L));
+        assertThat(result.duplicates(), is(0));
+        assertThat(result.runs(), is(0));
+        assertThat(writer.toString().lines().toList(), is(List.of(
+            "cpu,host=a value=1 1",
+            "cpu,host=a value=2 2",
+            "cpu,host=a value=4,idle=true 2",
+            "cpu,host=a value=3",
+            "cpu,host=b value=1 1",
+            "mem,host=a free=1 2"
+        )));
+    }
+
+    @Test
+    void keepLast() throws Exception {
+        var writer = new StringWriter();
+        var result = new LineProtocolSorter(Write.Deduplicate.KEEP_LAST, 100, directory).sort(reader(INPUT), writer);
+
+        assertThat(result.duplicates(), is(1));
+        assertThat(writer.toString().lines().toList(), is(List.of(
+            "cpu,host=a value=1 1",
+            "cpu,host=a value=4,idle=true 2",
+            "cpu,host=a value=3",
+            "cpu,host=b value=1 1",
+            "mem,host=a free=1 2"
+        )));
+    }
+
+    @Test
+    void mergeFields() throws Exception {
+        var input = """
+            cpu,host=a,region=eu value=1,user=0.5 1
+            cpu,region=eu,host=a value=2,system="busy \\"now\\"" 1
+            cpu,host=a,region=eu idle=true 1
+            """;
+
+        var writer = new StringWriter();
+        var result = new LineProtocolSorter(Write.Deduplicate.MERGE_FIELDS, 100, directory).sort(reader(input), writer);
+
+        assertThat(result.duplicates(), is(2));
+        assertThat(writer.toString(), is("cpu,host=a,region=eu value=2,user=0.5,system=\"busy \\\"now\\\"\",idle=true 1\n"));
+    }
+
+    @Test
+    void spillToDisk() throws Exception {
+        var input = new StringBuilder();
+        // last point of each host and timestamp, the host names sort in numeric order
+        var expected = new TreeMap<Integer, TreeMap<Integer, String>>();
+        for (int i = 999; i >= 0; i--) {
+            var line = "cpu,host=server" + i % 7 + " value=" + i + " " + i / 10;
+            input.append(line).append('\n');
+            expected.computeIfAbsent(i % 7, k -> new TreeMap<>()).put(i / 10, line);
+        }
+
+        var writer = new StringWriter();
+        var result = new LineProtocolSorter(Write.Deduplicate.KEEP_LAST, 64, directory).sort(reader(input.toString()), writer);
+
+        assertThat(result.runs(), is(16));
+        // the runs are deleted once merged
+        try (var files = Files.list(directory)) {
+            assertThat(files.count(), is(0L));
+        }
+
+        var lines = expected.values().stream().flatMap(points -> points.values().stream()).toList();
+        assertThat(writer.toString().lines().toList(), is(lines));
+        assertThat(result.duplicates(), is(1000 - lines.size()));
+    }
+
+    @Test
+    void failOnInvalidLine() {
+        var exception = assertThrows(
+            IllegalArgumentException.class,
+            () -> new LineProtocolSorter(Write.Deduplicate.NONE, 100, directory).sort(reader("cpu value=1 1\ncpu\n"), new StringWriter())
+        );
+
+        assertThat(exception.getMessage(), containsString("line 2"));
+    }
+
+    private static BufferedReader reader(String input) {
+        return new BufferedReader(new StringReader(input));
+    }
+}
@@ -0,0 +1,271 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.models.tasks.common.FetchType;
+import io.kestra.core.runners.RunContext;
+import io.kestra.core.runners.RunContextFactory;
+import io.kestra.core.serializers.JacksonMapper;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * End-to-end throughput and latency of the {@link Write}, {@link FluxQuery} and {@link Copy} tasks against the in-process
+ * {@link InfluxDBStandIn}, across payload sizes.
+ * <p>
+ * Excluded from the default build, run with {@code ./gradlew loadTest}, optionally with
+ * {@code -PloadSizes=10000,100000} and {@code -PloadIterations=20}. The results are printed at the end and written to
+ * {@code build/reports/load}.
+ */
+@KestraTest
+@Tag("load")
+@TestInstance(Lifecycle.PER_CLASS)
+class LoadTest {
+    private static final long START = 1422568543702900257L;
+
+    private static final List<Integer> SIZES = Arrays.stream(System.getProperty("load.sizes", "10000,100000,1000000").split(","))
+        .map(String::strip)
+        .map(Integer::valueOf)
+        .toList();
+    private static final int ITERATIONS = Integer.getInteger("load.iterations", 10);
+    private static final int WARMUP = Integer.getInteger("load.warmup", 2);
+    // FETCH keeps all the rows in memory, larger results are only measured with STORE
+    private static final int FETCH_MAX_ROWS = Integer.getInteger("load.fetchMaxRows", 100_000);
+
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    private final List<Result> results = new ArrayList<>();
+
+    @Test
+    void write() throws Exception {
+        var scenarios = List.<Map.Entry<String, UnaryOperator<Write.WriteBuilder<?, ?>>>>of(
+            Map.entry("blocking", builder -> builder),
+            Map.entry("blocking-gzip", builder -> builder.options(ClientOptions.builder().gzip(Property.of(true)).build())),
+            Map.entry("batching", builder -> builder.mode(Property.of(Write.Mode.BATCHING))),
+            Map.entry("concurrent", builder -> builder.concurrency(Property.of(4)))
+        );
+
+        for (var size : SIZES) {
+            var runContext = runContextFactory.of(Map.of());
+            var uri = lineProtocol(runContext, size);
+
+            for (var scenario : scenarios) {
+                try (var standIn = new InfluxDBStandIn()) {
+                    var task = scenario.getValue().apply(Write.builder()
+                        .url(standIn.url())
+                        .from(new Property<>(uri.toString()))
+                    ).build();
+
+                    this.measure("Write", scenario.getKey(), size, "points", () -> {
+                        standIn.reset();
+                        assertThat(task.run(runContext).getCount(), is(size));
+                        assertThat(standIn.points(), is((long) size));
+                    });
+                }
+            }
+
+            // a slow server throttling one request out of ten
+            try (var standIn = new InfluxDBStandIn().latency(Duration.ofMillis(2)).throttleEvery(10, Duration.ZERO)) {
+                var task = Write.builder()
+                    .url(standIn.url())
+                    .from(new Property<>(uri.toString()))
+                    .batchSize(Property.of(1000))
+                    .build();
+
+                this.measure("Write", "throttled", size, "points", () -> {
+                    standIn.reset();
+                    assertThat(task.run(runContext).getCount(), is(size));
+                    assertThat(standIn.points(), is((long) size));
+                });
+            }
+
+            runContext.storage().deleteFile(uri);
+        }
+    }
+
+    @Test
+    void fluxQuery() throws Exception {
+        for (var size : SIZES) {
+            var runContext = runContextFactory.of(Map.of());
+
+            try (var standIn = new InfluxDBStandIn().rows(size).hosts(100)) {
+                if (size <= FETCH_MAX_ROWS) {
+                    var fetch = query(standIn, FetchType.FETCH, FluxQuery.Format.ION, null);
+                    this.measure("FluxQuery", "fetch", size, "rows", () ->
+                        assertThat(fetch.run(runContext).getRows().size(), is(size))
+                    );
+                }
+
+                var ion = query(standIn, FetchType.STORE, FluxQuery.Format.ION, null);
+                this.measure("FluxQuery", "store-ion", size, "rows", () -> stored(runContext, ion, size));
+
+                var csv = query(standIn, FetchType.STORE, FluxQuery.Format.CSV, null);
+                this.measure("FluxQuery", "store-csv", size, "rows", () -> stored(runContext, csv, size));
+
+                var gzip = query(standIn, FetchType.STORE, FluxQuery.Format.ION, ClientOptions.builder().gzip(Property.of(true)).build());
+                this.measure("FluxQuery", "store-ion-gzip", size, "rows", () -> stored(runContext, gzip, size));
+            }
+        }
+    }
+
+    @Test
+    void copy() throws Exception {
+        for (var size : SIZES) {
+            var runContext = runContextFactory.of(Map.of());
+
+            try (
+                var source = new InfluxDBStandIn().rows(size).hosts(100);
+                var target = new InfluxDBStandIn()
+            ) {
+                var task = Copy.builder()
+                    .url(source.url())
+                    .query(new Property<>("from(bucket: \"my-bucket\") |> range(start: 0)"))
+                    .target(CopyTarget.builder().url(target.url()).bucket("copy").build())
+                    .build();
+
+                this.measure("Copy", "copy", size, "points", () -> {
+                    target.reset();
+                    assertThat(task.run(runContext).getCount(), is((long) size));
+                    assertThat(target.points(), is((long) size));
+                });
+            }
+        }
+    }
+
+    @AfterAll
+    void report() throws Exception {
+        var table = new StringBuilder("\n%-10s %-15s %10s %21s %10s %10s %10s %12s\n".formatted(
+            "Task", "Scenario", "Size", "Throughput", "p50 ms", "p99 ms", "Max ms", "Peak heap MB"
+        ));
+        for (var result : results) {
+            table.append("%-10s %-15s %10d %12.0f %-8s %10.1f %10.1f %10.1f %12.1f\n".formatted(
+                result.task(), result.scenario(), result.size(), result.throughput(), result.unit() + "/s",
+                result.p50Millis(), result.p99Millis(), result.maxMillis(), result.peakHeapBytes() / 1024.0 / 1024.0
+            ));
+        }
+        System.out.println(table);
+
+        var report = System.getProperty("load.report");
+        if (report != null) {
+            var file = new File(report);
+            file.getParentFile().mkdirs();
+            JacksonMapper.ofJson().writerWithDefaultPrettyPrinter().writeValue(file, results);
+        }
+    }
+
+    /**
+     * Run the task {@link #WARMUP} times, then measure {@link #ITERATIONS} runs.
+     */
+    private void measure(String task, String scenario, int size, String unit, Run run) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            run.run();
+        }
+
+        var heap = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+        System.gc();
+        heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        var durations = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            var started = System.nanoTime();
+            run.run();
+            durations[i] = System.nanoTime() - started;
+        }
+
+        // the pools peak at different times, their sum is an upper bound of the peak heap
+        var peakHeap = heap.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        var total = Arrays.stream(durations).sum();
+        Arrays.sort(durations);
+
+        results.add(new Result(
+            task,
+            scenario,
+            size,
+            ITERATIONS,
+            (double) size * ITERATIONS / (total / 1e9),
+            unit,
+            percentile(durations, 0.50) / 1e6,
+            percentile(durations, 0.99) / 1e6,
+            durations[durations.length - 1] / 1e6,
+            peakHeap
+        ));
+    }
+
+    /**
+     * @return the nearest-rank percentile of the sorted values
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        var rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private static FluxQuery query(InfluxDBStandIn standIn, FetchType fetchType, FluxQuery.Format format, ClientOptions options) {
+        return FluxQuery.builder()
+            .url(standIn.url())
+            .query(new Property<>("from(bucket: \"my-bucket\") |> range(start: -1h)"))
+            .fetchType(Property.of(fetchType))
+            .format(Property.of(format))
+            .options(options)
+            .build();
+    }
+
+    private static void stored(RunContext runContext, FluxQuery task, int size) throws Exception {
+        var output = task.run(runContext);
+        assertThat(output.getCount(), is(size));
+        runContext.storage().deleteFile(URI.create(output.getUri()));
+    }
+
+    private static URI lineProtocol(RunContext runContext, int size) throws Exception {
+        var file = runContext.workingDir().createTempFile(".lp").toFile();
+        try (var writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8), 64 * 1024)) {
+            for (int i = 0; i < size; i++) {
+                writer.write("cpu,host=server" + (i % 100) + ",region=region" + (i % 4) + " usage=" + (i % 1000) / 10.0 + ",count=" + i + "i " + (START + i) + "\n");
+            }
+        }
+        return runContext.storage().putFile(file);
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws Exception;
+    }
+
+    record Result(
+        String task,
+        String scenario,
+        int size,
+        int iterations,
+        double throughput,
+        String unit,
+        double p50Millis,
+        double p99Millis,
+        double maxMillis,
+        long peakHeapBytes
+    ) {
+    }
+}
@@ -0,0 +1,74 @@
+package io.kestra.plugin.influxdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PartitionedWriterTest {
+    @Test
+    void keepSeriesOrder() throws Exception {
+        var sent = new ConcurrentHashMap<String, List<String>>();
+
+        PartitionedWriter.Result result;
+        try (var writer = new PartitionedWriter(4, () -> 3, Long.MAX_VALUE, batch -> {
+            for (var line : batch.lines().split("\n")) {
+                sent.computeIfAbsent(line.substring(0, line.indexOf(' ')), k -> Collections.synchronizedList(new ArrayList<>())).add(line);
+            }
+        })) {
+            for (int i = 0; i < 1000; i++) {
+                writer.add("cpu,host=server" + (i % 10) + " value=" + i + " " + i);
+            }
+
+            result = writer.finish();
+        }
+
+        assertThat(result.count(), is(1000));
+        assertThat(sent.keySet(), hasSize(10));
+        for (var lines : sent.values()) {
+            var timestamps = lines.stream().map(line -> Long.parseLong(line.substring(line.lastIndexOf(' ') + 1))).toList();
+            assertThat(timestamps, hasSize(100));
+            assertThat(timestamps, is(timestamps.stream().sorted().toList()));
+        }
+    }
+
+    @Test
+    void failOnSenderError() throws Exception {
+        try (var writer = new PartitionedWriter(2, () -> 1, Long.MAX_VALUE, batch -> {
+            throw new IllegalStateException("boom");
+        })) {
+            var exception = assertThrows(IllegalStateException.class, () -> {
+                for (int i = 0; i < 1000; i++) {
+                    writer.add("cpu,host=server" + i + " value=1 " + i);
+                }
+                writer.finish();
+            });
+
+            assertThat(exception.getMessage(), is("boom"));
+        }
+    }
+
+    @Test
+    void seriesHashIgnoresTagOrder() {
+        assertThat(
+            LineProtocolParser.seriesHash("cpu,host=a,region=b value=1 1"),
+            is(LineProtocolParser.seriesHash("cpu,region=b,host=a value=2 2"))
+        );
+        assertThat(
+            LineProtocolParser.seriesHash("cpu,host=a,region=b value=1"),
+            not(LineProtocolParser.seriesHash("cpu,host=b,region=a value=1"))
+        );
+        assertThat(
+            LineProtocolParser.seriesHash("cpu value=1"),
+            not(LineProtocolParser.seriesHash("mem value=1"))
+        );
+    }
+}
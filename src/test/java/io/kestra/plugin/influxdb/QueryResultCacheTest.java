@@ -0,0 +1,115 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.models.tasks.common.FetchType;
+import io.kestra.core.runners.RunContextFactory;
+import io.kestra.core.utils.IdUtils;
+import io.kestra.core.utils.TestsUtils;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@KestraTest
+class QueryResultCacheTest {
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    @Test
+    void rangeStop() {
+        assertThat(
+            QueryResultCache.rangeStop("from(bucket: \"b\") |> range(start: 2024-01-01T00:00:00Z, stop: 2024-01-02T00:00:00Z)"),
+            is(Instant.parse("2024-01-02T00:00:00Z"))
+        );
+        assertThat(
+            QueryResultCache.rangeStop("""
+                a = from(bucket: "b") |> range(start: 2024-01-01T00:00:00Z, stop: 2024-01-02T00:00:00+01:00)
+                b = from(bucket: "b") |> range(stop: 2024-01-03T00:00:00Z, start: 2024-01-02T00:00:00Z)
+                """),
+            is(Instant.parse("2024-01-03T00:00:00Z"))
+        );
+
+        // the result of open or relative ranges may still change
+        assertThat(QueryResultCache.rangeStop("from(bucket: \"b\") |> range(start: -1h)"), is(nullValue()));
+        assertThat(QueryResultCache.rangeStop("from(bucket: \"b\") |> range(start: -2h, stop: -1h)"), is(nullValue()));
+        assertThat(QueryResultCache.rangeStop("from(bucket: \"b\") |> range(start: 2024-01-01T00:00:00Z, stop: now())"), is(nullValue()));
+        assertThat(QueryResultCache.rangeStop("buckets()"), is(nullValue()));
+    }
+
+    @Test
+    void putAndGet() throws Exception {
+        var task = FluxQuery.builder()
+            .id("query")
+            .type(FluxQuery.class.getName())
+            .build();
+
+        var runContext = TestsUtils.mockRunContext(runContextFactory, task, Map.of());
+        var options = QueryCache.builder().build();
+        var closed = Instant.now().minusSeconds(60);
+        // the storage outlives the test, keep the results of previous runs out
+        var id = IdUtils.create();
+
+        assertThat(QueryResultCache.of(runContext, options, null, "query"), is(nullValue()));
+        assertThat(QueryResultCache.of(runContext, options, Instant.now().plusSeconds(60), "query"), is(nullValue()));
+
+        var cache = QueryResultCache.of(runContext, options, closed, "fetch", id);
+        assertThat(cache.get(FetchType.FETCH, FluxQuery.Format.ION).isPresent(), is(false));
+
+        var rows = List.<Map<String, Object>>of(Map.of("host", "a", "_value", 1.5), Map.of("host", "b", "_value", 2.5));
+        cache.put(FetchType.FETCH, FluxQuery.Output.builder().count(2).rows(rows).build(), null);
+
+        var fetched = QueryResultCache.of(runContext, options, closed, "fetch", id).get(FetchType.FETCH, FluxQuery.Format.ION).orElseThrow();
+        assertThat(fetched.isCached(), is(true));
+        assertThat(fetched.getCount(), is(2));
+        assertThat(fetched.getRows(), is(rows));
+
+        // the stored file is still there to be uploaded once cached
+        var file = runContext.workingDir().createTempFile(".ion");
+        Files.writeString(file, "{host:\"a\"}\n");
+        var stored = QueryResultCache.of(runContext, options, closed, "store", id);
+        stored.put(FetchType.STORE, FluxQuery.Output.builder().count(1).build(), file.toFile());
+        assertThat(Files.exists(file), is(true));
+
+        var output = stored.get(FetchType.STORE, FluxQuery.Format.ION).orElseThrow();
+        assertThat(output.getUri(), endsWith(".ion"));
+        try (var stream = runContext.storage().getFile(java.net.URI.create(output.getUri()))) {
+            assertThat(new String(stream.readAllBytes()), is("{host:\"a\"}\n"));
+        }
+    }
+
+    @Test
+    void evict() throws Exception {
+        var task = FluxQuery.builder()
+            .id("query")
+            .type(FluxQuery.class.getName())
+            .build();
+
+        var runContext = TestsUtils.mockRunContext(runContextFactory, task, Map.of());
+        var options = QueryCache.builder().maxSize(Property.of(100L)).build();
+        var closed = Instant.now().minusSeconds(60);
+        var id = IdUtils.create();
+
+        // about 40 bytes each, two of them fit in the cache but not three
+        var keys = List.of("first", "second", "third");
+        var rows = List.<Map<String, Object>>of(Map.of("value", "x".repeat(30)));
+        for (var key : keys) {
+            QueryResultCache.of(runContext, options, closed, key, id).put(FetchType.FETCH, FluxQuery.Output.builder().count(1).rows(rows).build(), null);
+        }
+
+        // the entries may be created within the same clock tick, so which one is evicted is not checked
+        var cached = 0;
+        for (var key : keys) {
+            if (QueryResultCache.of(runContext, options, closed, key, id).get(FetchType.FETCH, FluxQuery.Format.ION).isPresent()) {
+                cached++;
+            }
+        }
+        assertThat(cached, is(2));
+    }
+}
@@ -0,0 +1,161 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.runners.RunContextFactory;
+import io.kestra.core.utils.IdUtils;
+import io.kestra.core.utils.TestsUtils;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@KestraTest
+@TestInstance(Lifecycle.PER_CLASS)
+class RealtimeTriggerTest {
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    @BeforeAll
+    void beforeAll() throws Exception {
+        var testData = """
+                cpu,host=server01,region=us_west value=0.64 1422568543702900257
+                cpu,host=server01,region=us_west value=0.66 1422568543702900258
+                cpu,host=server02,region=eu_central value=0.88 1422568543702900259
+            """;
+
+        var task = Write.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .wireInputMultilineData(new Property<>(testData))
+            .build();
+
+        task.run(runContextFactory.of(Map.of()));
+    }
+
+    @Test
+    void evaluate() throws Exception {
+        var query = """
+            from(bucket: "my-bucket")
+              |> range(start: {{ watermark }}, stop: 2015-01-29T21:56:00Z)
+              |> filter(fn: (r) => r["_measurement"] == "cpu")
+            """;
+
+        var trigger = RealtimeTrigger.builder()
+            .id(IdUtils.create())
+            .type(RealtimeTrigger.class.getName())
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .query(new Property<>(query))
+            .maxRecords(Property.of(2))
+            .initialWatermark(Property.of("2015-01-29T21:55:00Z"))
+            .build();
+
+        var context = TestsUtils.mockTrigger(runContextFactory, trigger);
+
+        try {
+            var executions = Flux.from(trigger.evaluate(context.getKey(), context.getValue()))
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+            assertThat(executions, hasSize(2));
+            assertThat(executions.get(0).getTrigger().getVariables().get("count"), is(2));
+            assertThat(executions.get(1).getTrigger().getVariables().get("count"), is(1));
+        } finally {
+            trigger.kill();
+        }
+    }
+
+    @Test
+    void killWhileQuerying() throws Exception {
+        // the stand-in takes 10s to answer, the query is still waiting for the server when the trigger is killed
+        try (var standIn = new InfluxDBStandIn().latency(Duration.ofSeconds(10))) {
+            var trigger = RealtimeTrigger.builder()
+                .id(IdUtils.create())
+                .type(RealtimeTrigger.class.getName())
+                .url(standIn.url())
+                .query(new Property<>("from(bucket: \"my-bucket\") |> range(start: {{ watermark }})"))
+                .build();
+
+            var context = TestsUtils.mockTrigger(runContextFactory, trigger);
+            var subscription = Flux.from(trigger.evaluate(context.getKey(), context.getValue())).subscribe();
+
+            try {
+                Thread.sleep(500);
+
+                var started = System.nanoTime();
+                trigger.kill();
+
+                assertThat(Duration.ofNanos(System.nanoTime() - started), lessThan(Duration.ofSeconds(5)));
+            } finally {
+                subscription.dispose();
+            }
+        }
+    }
+
+    @Test
+    void stopWithoutDemand() throws Exception {
+        // more rows than the socket buffers hold, the stand-in is still writing the response when the trigger stops
+        try (var standIn = new InfluxDBStandIn().rows(1_000_000)) {
+            var trigger = RealtimeTrigger.builder()
+                .id(IdUtils.create())
+                .type(RealtimeTrigger.class.getName())
+                .url(standIn.url())
+                .query(new Property<>("from(bucket: \"my-bucket\") |> range(start: {{ watermark }})"))
+                .build();
+
+            var context = TestsUtils.mockTrigger(runContextFactory, trigger);
+            // a consumer that never requests an execution, the first row waits for demand in the record callback
+            var subscriber = new BaseSubscriber<>() {
+                @Override
+                protected void hookOnSubscribe(Subscription subscription) {
+                }
+            };
+            Flux.from(trigger.evaluate(context.getKey(), context.getValue())).subscribe(subscriber);
+
+            try {
+                await(() -> standIn.queries() == 1 && waitingForDemand());
+
+                trigger.stop();
+
+                await(() -> !waitingForDemand());
+                await(() -> standIn.cancelled() == 1);
+            } finally {
+                subscriber.dispose();
+            }
+        }
+    }
+
+    private static boolean waitingForDemand() {
+        return Thread.getAllStackTraces().values().stream()
+            .flatMap(Arrays::stream)
+            .anyMatch(frame -> frame.getClassName().equals(RealtimeTrigger.class.getName()) && frame.getMethodName().equals("emit"));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met in time");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
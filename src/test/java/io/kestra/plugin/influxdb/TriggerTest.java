@@ -0,0 +1,95 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.runners.RunContextFactory;
+import io.kestra.core.utils.IdUtils;
+import io.kestra.core.utils.TestsUtils;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@KestraTest
+@TestInstance(Lifecycle.PER_CLASS)
+class TriggerTest {
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    @BeforeAll
+    void beforeAll() throws Exception {
+        var testData = """
+                cpu,host=server01,region=us_west value=0.64 1422568543702900257
+                cpu,host=server01,region=us_west value=0.66 1422568543702900258
+                cpu,host=server02,region=eu_central value=0.88 1422568543702900259
+            """;
+
+        var task = Write.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .wireInputMultilineData(new Property<>(testData))
+            .build();
+
+        task.run(runContextFactory.of(Map.of()));
+    }
+
+    @Test
+    void evaluate() throws Exception {
+        var query = """
+            from(bucket: "my-bucket")
+              |> range(start: {{ watermark }}, stop: 2015-01-29T21:56:00Z)
+              |> filter(fn: (r) => r["_measurement"] == "cpu")
+            """;
+
+        var trigger = Trigger.builder()
+            .id(IdUtils.create())
+            .type(Trigger.class.getName())
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .query(new Property<>(query))
+            .initialWatermark(Property.of("2015-01-29T21:55:00Z"))
+            .build();
+
+        var context = TestsUtils.mockTrigger(runContextFactory, trigger);
+
+        var execution = trigger.evaluate(context.getKey(), context.getValue());
+
+        assertThat(execution.isPresent(), is(true));
+        assertThat(execution.get().getTrigger().getVariables().get("count"), is(3));
+        assertThat(execution.get().getTrigger().getVariables().get("watermark"), is("2015-01-29T21:55:43.702900260Z"));
+
+        // the watermark has moved after the last row, nothing new to fetch
+        execution = trigger.evaluate(context.getKey(), context.getValue());
+
+        assertThat(execution.isPresent(), is(false));
+    }
+
+    @Test
+    void renderConnection() throws Exception {
+        var trigger = Trigger.builder()
+            .id(IdUtils.create())
+            .type(Trigger.class.getName())
+            .url("{{ influxdb.url }}")
+            .token("{{ influxdb.token }}")
+            .build();
+
+        var key = trigger.clientKey(runContextFactory.of(Map.of(
+            "influxdb", Map.of("url", "http://influxdb:8086", "token", "secret-token")
+        )));
+
+        assertThat(key.url(), is("http://influxdb:8086"));
+        assertThat(key.token(), is("secret-token"));
+        assertThat(key.org(), is("my-org"));
+        assertThat(key.bucket(), is("my-bucket"));
+    }
+}
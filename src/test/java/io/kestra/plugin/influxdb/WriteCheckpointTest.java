@@ -0,0 +1,63 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.runners.RunContextFactory;
+import io.kestra.core.utils.TestsUtils;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@KestraTest
+class WriteCheckpointTest {
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    @Test
+    void saveLoadDelete() throws Exception {
+        var task = Write.builder()
+            .id("write")
+            .type(Write.class.getName())
+            .build();
+
+        var runContext = TestsUtils.mockRunContext(runContextFactory, task, Map.of());
+
+        var checkpoint = WriteCheckpoint.of(runContext, task.getId(), "kestra:///data.txt", Duration.ZERO);
+        assertThat(checkpoint.load(), is(nullValue()));
+
+        checkpoint.save(1200, 12);
+        assertThat(checkpoint.load(), is(new WriteCheckpoint.State("kestra:///data.txt", 1200, 12)));
+
+        // a checkpoint is only valid for the file it was written for
+        assertThat(WriteCheckpoint.of(runContext, task.getId(), "kestra:///other.txt", Duration.ZERO).load(), is(nullValue()));
+
+        checkpoint.delete();
+        assertThat(checkpoint.load(), is(nullValue()));
+    }
+
+    @Test
+    void updateEveryInterval() throws Exception {
+        var task = Write.builder()
+            .id("write")
+            .type(Write.class.getName())
+            .build();
+
+        var runContext = TestsUtils.mockRunContext(runContextFactory, task, Map.of());
+
+        // the updates within the interval are not saved
+        var throttled = WriteCheckpoint.of(runContext, task.getId(), "kestra:///data.txt", Duration.ofHours(1));
+        throttled.update(100, 1);
+        assertThat(throttled.load(), is(nullValue()));
+
+        var every = WriteCheckpoint.of(runContext, task.getId(), "kestra:///data.txt", Duration.ZERO);
+        every.update(100, 1);
+        every.update(200, 2);
+        assertThat(every.load(), is(new WriteCheckpoint.State("kestra:///data.txt", 200, 2)));
+
+        every.delete();
+    }
+}
@@ -0,0 +1,107 @@
+package io.kestra.plugin.influxdb;
+
+import com.influxdb.exceptions.InfluxException;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+import retrofit2.Response;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteRateControllerTest {
+    private static final LineProtocolBatcher.Batch BATCH = new LineProtocolBatcher.Batch("cpu value=1 1\n", 1, 14);
+
+    @Test
+    void retryAfterThrottling() throws Exception {
+        var sleeps = new ArrayList<Duration>();
+        var controller = new WriteRateController(1000, 4, 5, sleeps::add);
+        var calls = new AtomicInteger();
+
+        controller.send(BATCH, batch -> {
+            if (calls.incrementAndGet() < 3) {
+                throw exception(429, "2");
+            }
+        });
+
+        assertThat(calls.get(), is(3));
+        assertThat(controller.retries(), is(2));
+        assertThat(sleeps, is(List.of(Duration.ofSeconds(2), Duration.ofSeconds(2))));
+        // halved only once as both rejections happened in the same interval, then increased by the success
+        assertThat(controller.batchSize(), is(600));
+        assertThat(controller.concurrency(), is(2));
+    }
+
+    @Test
+    void growBackAfterThrottling() throws Exception {
+        var controller = new WriteRateController(1000, 4, 5, duration -> {});
+        var calls = new AtomicInteger();
+
+        controller.send(BATCH, batch -> {
+            if (calls.incrementAndGet() == 1) {
+                throw exception(503, null);
+            }
+        });
+
+        for (int i = 0; i < 20; i++) {
+            controller.send(BATCH, batch -> {});
+        }
+
+        assertThat(controller.batchSize(), is(1000));
+        assertThat(controller.concurrency(), is(4));
+    }
+
+    @Test
+    void failOnOtherErrors() {
+        var controller = new WriteRateController(1000, 1, 5, duration -> {});
+
+        var exception = assertThrows(InfluxException.class, () -> controller.send(BATCH, batch -> {
+            throw exception(400, null);
+        }));
+
+        assertThat(exception.status(), is(400));
+        assertThat(controller.retries(), is(0));
+    }
+
+    @Test
+    void failAfterMaxRetries() {
+        var controller = new WriteRateController(1000, 1, 2, duration -> {});
+
+        assertThrows(InfluxException.class, () -> controller.send(BATCH, batch -> {
+            throw exception(429, "0");
+        }));
+
+        assertThat(controller.retries(), is(2));
+    }
+
+    @Test
+    void backoffWithoutRetryAfter() {
+        var first = WriteRateController.delay(exception(503, null), 0);
+        var later = WriteRateController.delay(exception(503, null), 20);
+
+        assertThat(first, allOf(greaterThanOrEqualTo(Duration.ofMillis(250)), lessThanOrEqualTo(Duration.ofMillis(500))));
+        assertThat(later, allOf(greaterThanOrEqualTo(Duration.ofSeconds(15)), lessThanOrEqualTo(Duration.ofSeconds(30))));
+    }
+
+    private static InfluxException exception(int status, String retryAfter) {
+        var raw = new okhttp3.Response.Builder()
+            .code(status)
+            .message("error")
+            .protocol(Protocol.HTTP_1_1)
+            .request(new Request.Builder().url("http://localhost:8086/api/v2/write").build());
+
+        if (retryAfter != null) {
+            raw.header("Retry-After", retryAfter);
+        }
+
+        return new InfluxException(Response.error(ResponseBody.create("", MediaType.get("text/plain")), raw.build()));
+    }
+}
@@ -0,0 +1,169 @@
+package io.kestra.plugin.influxdb;
+
+import io.kestra.core.junit.annotations.KestraTest;
+import io.kestra.core.models.property.Property;
+import io.kestra.core.runners.RunContextFactory;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@KestraTest
+class WriteSpoolTest {
+    private static final long MB = 1024 * 1024;
+
+    @Inject
+    private RunContextFactory runContextFactory;
+
+    @TempDir
+    private Path directory;
+
+    private static WriteSpool.Lines lines(int count) {
+        Iterator<String> iterator = IntStream.range(0, count)
+            .mapToObj(i -> "cpu,host=server" + (i % 3) + " value=" + i + " " + (1422568543702900257L + i))
+            .iterator();
+        return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static WriteSpool.Target target(InfluxDBStandIn standIn) {
+        return new WriteSpool.Target(new InfluxDBClientPool.Key(standIn.url(), "my-token", "my-org", "my-bucket"), 100, MB, 0);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met in time");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void drain() throws Exception {
+        var spool = WriteSpool.of(directory, MB, 4096);
+        try (var standIn = new InfluxDBStandIn().keepWrites(true)) {
+            var appended = spool.append(lines(1000));
+            assertThat(appended.points(), is(1000));
+
+            var stats = spool.stats();
+            assertThat(stats.pendingBytes(), is(appended.bytes()));
+            assertThat(stats.segments(), greaterThan(1));
+
+            spool.drainTo(target(standIn));
+            await(() -> standIn.points() == 1000);
+            await(() -> spool.stats().pendingBytes() == 0);
+
+            // in the append order, in batches of at most 100 points
+            var lines = standIn.bodies().stream().flatMap(String::lines).toList();
+            assertThat(lines.getFirst(), is("cpu,host=server0 value=0 1422568543702900257"));
+            assertThat(lines.getLast(), is("cpu,host=server0 value=999 1422568543702901256"));
+            assertThat(standIn.writes(), greaterThanOrEqualTo(10L));
+
+            // drained segments are deleted, the next append starts over in a new segment
+            spool.append(lines(1));
+            await(() -> standIn.points() == 1001);
+            try (var files = Files.list(directory)) {
+                assertThat(files.filter(path -> path.toString().endsWith(".segment")).count(), is(1L));
+            }
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    void outage() throws Exception {
+        var spool = WriteSpool.of(directory, MB, MB);
+        try (var standIn = new InfluxDBStandIn().failEvery(1)) {
+            spool.drainTo(target(standIn));
+            spool.append(lines(250));
+
+            await(() -> standIn.failed() > 0);
+            assertThat(standIn.points(), is(0L));
+            assertThat(spool.stats().pendingBytes(), greaterThan(0L));
+
+            // the server is back, the drainer retries after its backoff
+            standIn.failEvery(0);
+            await(() -> standIn.points() == 250);
+            await(() -> spool.stats().pendingBytes() == 0);
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    void recover() throws Exception {
+        var spool = WriteSpool.of(directory, MB, 2048);
+        spool.append(lines(300));
+        var pending = spool.stats().pendingBytes();
+        spool.close();
+
+        var reopened = WriteSpool.of(directory, MB, 2048);
+        try (var standIn = new InfluxDBStandIn()) {
+            assertThat(reopened.stats().pendingBytes(), is(pending));
+
+            reopened.drainTo(target(standIn));
+            await(() -> standIn.points() == 300);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void rollback() throws Exception {
+        var spool = WriteSpool.of(directory, 10_000, 2048);
+        try {
+            spool.append(lines(10));
+            var pending = spool.stats().pendingBytes();
+
+            var failing = lines(100);
+            var count = new int[1];
+            assertThrows(IllegalStateException.class, () -> spool.append(() -> {
+                if (++count[0] > 50) {
+                    throw new IllegalStateException("input failed");
+                }
+                return failing.next();
+            }));
+            assertThat(spool.stats().pendingBytes(), is(pending));
+
+            var exception = assertThrows(IllegalStateException.class, () -> spool.append(lines(1000)));
+            assertThat(exception.getMessage(), containsString("is full"));
+            assertThat(spool.stats().pendingBytes(), is(pending));
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    void write() throws Exception {
+        try (var standIn = new InfluxDBStandIn()) {
+            var task = Write.builder()
+                .url(standIn.url())
+                .wireInputMultilineData(new Property<>("""
+                    cpu,host=server01,region=us_west value=0.64 1422568543702900257
+                    mem,host=server01,region=us_west free=1024,total=4096 1422568543702900260
+                    """))
+                .spool(SpoolOptions.builder().directory(new Property<>(directory.toString())).build())
+                .build();
+
+            var output = task.run(runContextFactory.of(Map.of()));
+
+            assertThat(output.getCount(), is(2));
+            assertThat(output.getSpoolPendingBytes(), greaterThanOrEqualTo(0L));
+            await(() -> standIn.points() == 2);
+
+            WriteSpool.of(WriteSpool.directory(directory, standIn.url(), "my-org", "my-bucket"), MB, MB).close();
+        }
+    }
+}
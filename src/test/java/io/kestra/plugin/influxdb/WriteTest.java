@@ -6,11 +6,21 @@ import io.kestra.core.runners.RunContextFactory;
 import jakarta.inject.Inject;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @KestraTest
 class WriteTest {
@@ -40,4 +50,113 @@ class WriteTest {
         assertThat(runOutput.getCount(), is(notNullValue()));
         assertThat(runOutput.getCount(), is(2));
     }
+
+    @Test
+    void runFromGzippedFile() throws Exception {
+        var runContext = runContextFactory.of(Map.of());
+
+        var buffer = new ByteArrayOutputStream();
+        try (var output = new GZIPOutputStream(buffer)) {
+            for (int i = 0; i < 25; i++) {
+                output.write(("cpu,host=server0" + (i % 3) + ",region=us_west value=0." + i + " " + (1422568543702900257L + i) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        var uri = runContext.storage().putFile(new ByteArrayInputStream(buffer.toByteArray()), "data.lp.gz");
+
+        var task = Write.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .from(new Property<>(uri.toString()))
+            .batchSize(Property.of(10))
+            .build();
+
+        var runOutput = task.run(runContext);
+
+        assertThat(runOutput.getCount(), is(25));
+        assertThat(runOutput.getBatches(), is(3));
+        assertThat(runOutput.getBytes(), greaterThan(0L));
+    }
+
+    @Test
+    void runBatching() throws Exception {
+        var testData = new StringBuilder();
+        for (int i = 0; i < 2500; i++) {
+            testData.append("cpu,host=server0").append(i % 3).append(",region=us_west value=0.").append(i).append(" ").append(1422568543702900257L + i).append("\n");
+        }
+
+        var runContext = runContextFactory.of(Map.of());
+
+        var task = Write.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .wireInputMultilineData(new Property<>(testData.toString()))
+            .mode(Property.of(Write.Mode.BATCHING))
+            .batchSize(Property.of(1000))
+            .build();
+
+        var runOutput = task.run(runContext);
+
+        assertThat(runOutput.getCount(), is(2500));
+        assertThat(runOutput.getBatches(), is(3));
+        assertThat(runOutput.getErrors(), is(nullValue()));
+    }
+
+    @Test
+    void runConcurrently() throws Exception {
+        var testData = new StringBuilder();
+        for (int i = 0; i < 2500; i++) {
+            testData.append("cpu,host=server0").append(i % 8).append(",region=us_west value=0.").append(i).append(" ").append(1422568543702900257L + i).append("\n");
+        }
+
+        var runContext = runContextFactory.of(Map.of("bucket", "my-bucket"));
+
+        var task = Write.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("{{ bucket }}")
+            .wireInputMultilineData(new Property<>(testData.toString()))
+            .concurrency(Property.of(4))
+            .batchSize(Property.of(100))
+            .build();
+
+        var runOutput = task.run(runContext);
+
+        assertThat(runOutput.getCount(), is(2500));
+        assertThat(runOutput.getBatches(), greaterThanOrEqualTo(25));
+        var points = runContext.metrics().stream().filter(metric -> metric.getName().equals("points")).findFirst().orElseThrow();
+        assertThat(points.getValue(), is(2500.0));
+        // tagged with the bucket actually written to, not its template
+        assertThat(points.getTags(), hasEntry("bucket", "my-bucket"));
+    }
+
+    @Test
+    void validateRejectsInvalidLines() throws Exception {
+        var testData = """
+            cpu,host=server01,region=us_west value=0.64 1422568543702900257
+            cpu,host=server01,region=us_west value=
+            mem,host=server01,region=us_west free=1024i,total=4096i 1422568543702900260
+            mem,host=server01 free=abc 1422568543702900260
+            """;
+
+        var runContext = runContextFactory.of(Map.of());
+
+        var task = Write.builder()
+            .url("http://localhost:8086")
+            .token("my-token")
+            .org("my-org")
+            .bucket("my-bucket")
+            .wireInputMultilineData(new Property<>(testData))
+            .validate(Property.of(true))
+            .build();
+
+        var exception = assertThrows(IllegalArgumentException.class, () -> task.run(runContext));
+
+        assertThat(exception.getMessage(), containsString("line 2: missing field value"));
+        assertThat(exception.getMessage(), containsString("line 4: invalid field value"));
+    }
 }